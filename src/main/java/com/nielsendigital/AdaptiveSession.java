@@ -0,0 +1,120 @@
+package com.nielsendigital;
+
+import java.util.Random;
+
+/*
+AdaptiveSession chooses an adaptive quiz one card at a time and decides when it has seen enough.
+
+Mastery is a Beta-Bernoulli estimate at two levels, all kept in primitive arrays indexed by entry ordinal:
+    - the learner: Beta(1 + correct, 1 + incorrect) over this session's answers
+    - each entry: its correct/incorrect history (weighted by HISTORY_WEIGHT) plus this session's answers, shrunk
+      towards the learner's mastery by PRIOR_STRENGTH pseudo answers, so a new word is predicted at the learner's
+      current level rather than 50/50
+The next card is the one whose answer is hardest to predict, i.e., the highest p * (1 - p), skipping cards asked
+in the last REPEAT_GAP prompts. The session stops once the learner's mastery is known to within
+CONFIDENCE_HALF_WIDTH (95%), after at least MIN_PROMPTS and at most maxPrompts cards.
+ */
+public class AdaptiveSession {
+    public static final double CONFIDENCE_HALF_WIDTH = 0.15;
+    public static final int MIN_PROMPTS = 5;
+    private static final int REPEAT_GAP = 3;
+    private static final double HISTORY_WEIGHT = 0.5; // earlier sessions count less than this one
+    private static final double PRIOR_STRENGTH = 2.0;
+
+    private final WordBankEntry[] entries;
+    private final double[] correct;
+    private final double[] incorrect;
+    private final int[] lastAsked; // prompt number the entry was last asked at
+    private final int maxPrompts;
+    private final Random random;
+    private int prompts;
+    private int sessionCorrect;
+
+    public AdaptiveSession(WordBankEntry[] entries, int maxPrompts, Random random) {
+        this.entries = entries;
+        this.correct = new double[entries.length];
+        this.incorrect = new double[entries.length];
+        this.lastAsked = new int[entries.length];
+        this.maxPrompts = maxPrompts;
+        this.random = random;
+        for(int i = 0; i < entries.length; i++) {
+            int seen = entries[i].getCountSeen();
+            int missed = Math.min(seen, entries[i].getCountIncorrect());
+            this.correct[i] = HISTORY_WEIGHT * (seen - missed);
+            this.incorrect[i] = HISTORY_WEIGHT * missed;
+            this.lastAsked[i] = -REPEAT_GAP - 1;
+        }
+    }
+
+    // the ordinal of the next card to ask, or -1 once the session is done
+    public int next() {
+        if(isDone() || this.entries.length == 0) {
+            return -1;
+        }
+        double mastery = getMastery();
+        int best = -1;
+        double bestScore = -1;
+        int ties = 0;
+        for(int i = 0; i < this.entries.length; i++) {
+            if(this.prompts - this.lastAsked[i] <= REPEAT_GAP && this.entries.length > REPEAT_GAP) {
+                continue;
+            }
+            double p = predict(i, mastery);
+            double score = p * (1 - p);
+            if(score > bestScore) {
+                best = i;
+                bestScore = score;
+                ties = 1;
+            } else if(score == bestScore && this.random.nextInt(++ties) == 0) {
+                // even choice among equally uncertain cards, e.g., all the words never seen before
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public WordBankEntry getEntry(int ordinal) {
+        return this.entries[ordinal];
+    }
+
+    public void record(int ordinal, boolean isCorrect) {
+        if(isCorrect) {
+            this.correct[ordinal]++;
+            this.sessionCorrect++;
+        } else {
+            this.incorrect[ordinal]++;
+        }
+        this.lastAsked[ordinal] = this.prompts;
+        this.prompts++;
+    }
+
+    public boolean isDone() {
+        if(this.prompts >= this.maxPrompts) {
+            return true;
+        }
+        return this.prompts >= MIN_PROMPTS && getConfidenceHalfWidth() <= CONFIDENCE_HALF_WIDTH;
+    }
+
+    // chance the learner answers entry i correctly
+    public double predict(int ordinal, double mastery) {
+        return (this.correct[ordinal] + PRIOR_STRENGTH * mastery) /
+                (this.correct[ordinal] + this.incorrect[ordinal] + PRIOR_STRENGTH);
+    }
+
+    // posterior mean of the learner's chance of answering correctly
+    public double getMastery() {
+        return (1.0 + this.sessionCorrect) / (2.0 + this.prompts);
+    }
+
+    // half the width of the 95% interval around getMastery()
+    public double getConfidenceHalfWidth() {
+        double a = 1.0 + this.sessionCorrect;
+        double b = 1.0 + this.prompts - this.sessionCorrect;
+        double n = a + b;
+        return 1.96 * Math.sqrt((a * b) / (n * n * (n + 1)));
+    }
+
+    public int getPrompts() {
+        return prompts;
+    }
+}
@@ -0,0 +1,629 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/*
+BTreeWordBankStore keeps a word bank in a single file of PAGE_SIZE pages holding three B+trees:
+
+    primary          : normalized foreign term -> entry record
+    byLastSeen       : last seen + foreign term  (quiz selection, least recently seen first)
+    byCountIncorrect : count incorrect + foreign term  (quiz selection, most incorrect)
+
+so grading a quiz or adding a word rewrites the handful of pages on the entry's paths instead of the whole file,
+and the quiz selections are range scans along the linked leaves.
+
+Page 0 is the header: [magic][version][generation][pageCount][entryCount][three roots]. Every other page is a
+node: [type:1][count:2][link:4] followed by the cells. A leaf's link is its right sibling and its cells are
+[keyLen:2][valueLen:2][key][value]; an internal node's link is its first child and its cells are
+[keyLen:2][key][child:4], child holding the keys >= key. Keys compare as unsigned bytes and big-endian numbers with
+the sign bit flipped, so byte order is numeric order.
+
+Pages are written through as soon as they change and decoded nodes are kept in a small LRU cache. The file is
+opened per operation and the header's generation tells whether another WordBank changed it in the meantime (and
+the cache has to go). Nodes are split when full but never merged: removed cells leave free space that writeAll(),
+which builds a fresh file and moves it over the old one, reclaims. A crash in the middle of a point update can
+leave the trees out of step, so the word bank should be written as a whole now and then (e.g., by exporting it).
+ */
+public class BTreeWordBankStore implements WordBankStore {
+    public static final String EXTENSION = "llbt";
+    public static final int PAGE_SIZE = 4096;
+    private static final Metrics.Timer UPSERT_TIMER = Metrics.timer("wordbank.store.upsert");
+    private static final Metrics.Timer SCAN_TIMER = Metrics.timer("wordbank.store.scan");
+    private static final int MAGIC = 0x4C4C4254; // "LLBT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_CELL = PAGE_SIZE / 4; // so a split node always fits in its two pages
+    private static final int CACHED_PAGES = 256;
+    private static final int NODE_HEADER = 1 + 2 + 4;
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+    private static final int NONE = 0; // page 0 is the header, so no node links to it
+    private static final byte[] EMPTY = new byte[0];
+
+    private final File file;
+    private final Map<Integer, Node> cache;
+    private final Tree primary;
+    private final Tree byLastSeen;
+    private final Tree byCountIncorrect;
+    private FileChannel channel;
+    private long generation;
+    private int pageCount;
+    private int entryCount;
+    private boolean isModified;
+
+    public BTreeWordBankStore(File file) {
+        this.file = file;
+        this.cache = new LinkedHashMap<>(CACHED_PAGES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Node> eldest) {
+                return size() > CACHED_PAGES;
+            }
+        };
+        this.primary = new Tree();
+        this.byLastSeen = new Tree();
+        this.byCountIncorrect = new Tree();
+        this.generation = -1;
+    }
+
+    @Override
+    public boolean supportsPointUpdates() {
+        return true;
+    }
+
+    public synchronized int size() throws IOException {
+        begin();
+        try {
+            return this.entryCount;
+        } finally {
+            end();
+        }
+    }
+
+    // entries come back in the order of their foreign terms
+    @Override
+    public synchronized List<WordBankEntry> readAll(StringPool stringPool) throws IOException {
+        begin();
+        try {
+            List<WordBankEntry> entries = new ArrayList<>(this.entryCount);
+            this.primary.scan(EMPTY, (key, value) -> entries.add(decodeRecord(value, stringPool)));
+            return entries;
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public synchronized void writeAll(Collection<WordBankEntry> entries) throws IOException {
+        File tempFile = new File(this.file.getAbsoluteFile().getParentFile(), this.file.getName() + ".tmp");
+        Files.deleteIfExists(tempFile.toPath());
+        // in key order, so the primary tree is filled page by page
+        List<WordBankEntry> sorted = new ArrayList<>(entries);
+        sorted.sort((a, b) -> Arrays.compareUnsigned(primaryKey(a.getForeignLanguage()),
+                primaryKey(b.getForeignLanguage())));
+        BTreeWordBankStore rebuilt = new BTreeWordBankStore(tempFile);
+        rebuilt.begin();
+        try {
+            for(WordBankEntry entry : sorted) {
+                rebuilt.put(entry);
+            }
+            rebuilt.channel.force(false);
+        } catch (IOException e) {
+            rebuilt.end();
+            Files.deleteIfExists(tempFile.toPath());
+            throw e;
+        }
+        rebuilt.end();
+        Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        this.cache.clear();
+        this.generation = -1;
+    }
+
+    @Override
+    public synchronized void append(Collection<WordBankEntry> entries) throws IOException {
+        long start = UPSERT_TIMER.start();
+        begin();
+        try {
+            for(WordBankEntry entry : entries) {
+                put(entry);
+            }
+        } finally {
+            end();
+            UPSERT_TIMER.stop(start);
+        }
+    }
+
+    @Override
+    public synchronized void upsert(WordBankEntry entry) throws IOException {
+        long start = UPSERT_TIMER.start();
+        begin();
+        try {
+            put(entry);
+        } finally {
+            end();
+            UPSERT_TIMER.stop(start);
+        }
+    }
+
+    @Override
+    public synchronized List<WordBankEntry> scanByLastSeen(int limit) throws IOException {
+        return scanIndex(this.byLastSeen, EMPTY, Long.BYTES, limit);
+    }
+
+    @Override
+    public synchronized List<WordBankEntry> scanByCountIncorrect(int minCountIncorrect) throws IOException {
+        return scanIndex(this.byCountIncorrect, intKey(minCountIncorrect, EMPTY), Integer.BYTES, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        if(!this.file.isFile()) {
+            return;
+        }
+        try (FileChannel syncChannel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE)) {
+            syncChannel.force(false);
+        }
+    }
+
+    // follows an index from the given key and looks each entry up by the foreign term after the index's prefix
+    private List<WordBankEntry> scanIndex(Tree index, byte[] from, int prefixLength, int limit) throws IOException {
+        long start = SCAN_TIMER.start();
+        begin();
+        try {
+            List<WordBankEntry> entries = new ArrayList<>(Math.max(0, Math.min(limit, this.entryCount)));
+            if(limit <= 0) {
+                return entries;
+            }
+            index.scan(from, (key, value) -> {
+                byte[] record = this.primary.get(Arrays.copyOfRange(key, prefixLength, key.length));
+                if(record != null) {
+                    entries.add(decodeRecord(record, null));
+                }
+                return entries.size() < limit;
+            });
+            return entries;
+        } finally {
+            end();
+            SCAN_TIMER.stop(start);
+        }
+    }
+
+    // inserts or replaces the entry's record and moves its index keys
+    private void put(WordBankEntry entry) throws IOException {
+        byte[] key = primaryKey(entry.getForeignLanguage());
+        byte[] record = encodeRecord(entry);
+        if(4 + key.length + Long.BYTES > MAX_CELL || 4 + key.length + record.length > MAX_CELL) {
+            throw new IOException("the entry " + entry.getForeignLanguage() + " is too long for a word bank page");
+        }
+
+        byte[] previous = this.primary.get(key);
+        if(previous == null) {
+            this.entryCount++;
+        } else {
+            WordBankEntry stored = decodeRecord(previous, null);
+            this.byLastSeen.remove(longKey(stored.getLastSeenMillis(), key));
+            this.byCountIncorrect.remove(intKey(stored.getCountIncorrect(), key));
+        }
+        this.primary.put(key, record);
+        this.byLastSeen.put(longKey(entry.getLastSeenMillis(), key), EMPTY);
+        this.byCountIncorrect.put(intKey(entry.getCountIncorrect(), key), EMPTY);
+        this.isModified = true;
+    }
+
+    /*
+    Opens the file for one operation, creating the empty trees the first time. If another store has written the
+    file since this one last looked, the cached pages are stale and dropped.
+     */
+    private void begin() throws IOException {
+        this.channel = FileChannel.open(this.file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        this.isModified = false;
+        try {
+            if(this.channel.size() == 0) {
+                create();
+            } else {
+                readHeader();
+            }
+        } catch (IOException e) {
+            this.channel.close();
+            this.channel = null;
+            throw e;
+        }
+    }
+
+    // a new file starts at a random generation so a rebuilt file never passes for the one it replaced
+    private void create() throws IOException {
+        this.cache.clear();
+        this.generation = ThreadLocalRandom.current().nextLong();
+        this.pageCount = 1;
+        this.entryCount = 0;
+        this.primary.root = allocate(true).pageId;
+        this.byLastSeen.root = allocate(true).pageId;
+        this.byCountIncorrect.root = allocate(true).pageId;
+    }
+
+    private void readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4 + 4 + 8 + 4 + 4 + 3 * 4);
+        readFully(header, 0);
+        header.flip();
+        if(header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION) {
+            throw new IOException(this.file + " is not a version " + FORMAT_VERSION + " word bank file");
+        }
+        long fileGeneration = header.getLong();
+        if(fileGeneration != this.generation) {
+            this.cache.clear();
+            this.generation = fileGeneration;
+        }
+        this.pageCount = header.getInt();
+        this.entryCount = header.getInt();
+        this.primary.root = header.getInt();
+        this.byLastSeen.root = header.getInt();
+        this.byCountIncorrect.root = header.getInt();
+    }
+
+    private void end() throws IOException {
+        try {
+            if(this.isModified) {
+                this.generation++;
+                ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+                header.putInt(MAGIC)
+                        .putInt(FORMAT_VERSION)
+                        .putLong(this.generation)
+                        .putInt(this.pageCount)
+                        .putInt(this.entryCount)
+                        .putInt(this.primary.root)
+                        .putInt(this.byLastSeen.root)
+                        .putInt(this.byCountIncorrect.root);
+                header.rewind();
+                writeFully(header, 0);
+            }
+        } finally {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    private Node allocate(boolean isLeaf) throws IOException {
+        Node node = new Node(this.pageCount++, isLeaf);
+        write(node);
+        return node;
+    }
+
+    private Node read(int pageId) throws IOException {
+        Node node = this.cache.get(pageId);
+        if(node != null) {
+            return node;
+        }
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        readFully(page, (long) pageId * PAGE_SIZE);
+        page.flip();
+        node = Node.decode(pageId, page);
+        this.cache.put(pageId, node);
+        return node;
+    }
+
+    private void write(Node node) throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        node.encode(page);
+        page.rewind();
+        writeFully(page, (long) node.pageId * PAGE_SIZE);
+        this.cache.put(node.pageId, node);
+        this.isModified = true;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            if(this.channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of " + this.file + " at page " + position / PAGE_SIZE);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            this.channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private static byte[] primaryKey(String foreignTerm) {
+        return TranslationGraph.normalize(foreignTerm).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] longKey(long value, byte[] suffix) {
+        return ByteBuffer.allocate(Long.BYTES + suffix.length).putLong(value ^ Long.MIN_VALUE).put(suffix).array();
+    }
+
+    private static byte[] intKey(int value, byte[] suffix) {
+        return ByteBuffer.allocate(Integer.BYTES + suffix.length).putInt(value ^ Integer.MIN_VALUE).put(suffix).array();
+    }
+
+    // the binary export layout (see WordBankExporter), so records decode with BinaryWordBankStore.readEntry()
+    static byte[] encodeRecord(WordBankEntry entry) {
+        byte[][] strings = {
+                entry.getForeignLanguage().getBytes(StandardCharsets.UTF_8),
+                entry.getNativeLanguage().getBytes(StandardCharsets.UTF_8),
+                entry.getGrammar().getBytes(StandardCharsets.UTF_8),
+                entry.getAnswer().getBytes(StandardCharsets.UTF_8)
+        };
+        int size = Long.BYTES + 2 * LatencyHistogram.varLongSize(Integer.MAX_VALUE) + Double.BYTES + 1;
+        for(byte[] string : strings) {
+            size += LatencyHistogram.varLongSize(string.length) + string.length;
+        }
+        ByteBuffer record = ByteBuffer.allocate(size);
+        for(byte[] string : strings) {
+            LatencyHistogram.putVarLong(record, string.length);
+            record.put(string);
+        }
+        record.putLong(entry.getLastSeenMillis());
+        LatencyHistogram.putVarLong(record, entry.getCountSeen());
+        LatencyHistogram.putVarLong(record, entry.getCountIncorrect());
+        record.putDouble(entry.isRated() ? entry.getDifficulty() : Double.NaN);
+        record.put((byte) entry.getLeitnerBox());
+        return Arrays.copyOf(record.array(), record.position());
+    }
+
+    static WordBankEntry decodeRecord(byte[] record, StringPool stringPool) {
+        return BinaryWordBankStore.readEntry(ByteBuffer.wrap(record), stringPool);
+    }
+
+    private interface CellVisitor {
+        // false stops the scan
+        boolean visit(byte[] key, byte[] value) throws IOException;
+    }
+
+    private static final class Split {
+        final byte[] separator;
+        final int rightPage;
+
+        Split(byte[] separator, int rightPage) {
+            this.separator = separator;
+            this.rightPage = rightPage;
+        }
+    }
+
+    private final class Tree {
+        int root;
+
+        byte[] get(byte[] key) throws IOException {
+            Node leaf = findLeaf(key);
+            int index = leaf.search(key);
+            return (index >= 0) ? leaf.values.get(index) : null;
+        }
+
+        void put(byte[] key, byte[] value) throws IOException {
+            Split split = put(this.root, key, value);
+            if(split != null) {
+                Node newRoot = new Node(BTreeWordBankStore.this.pageCount++, false);
+                newRoot.children.add(this.root);
+                newRoot.children.add(split.rightPage);
+                newRoot.keys.add(split.separator);
+                write(newRoot);
+                this.root = newRoot.pageId;
+            }
+        }
+
+        boolean remove(byte[] key) throws IOException {
+            Node leaf = findLeaf(key);
+            int index = leaf.search(key);
+            if(index < 0) {
+                return false;
+            }
+            leaf.keys.remove(index);
+            leaf.values.remove(index);
+            write(leaf);
+            return true;
+        }
+
+        // visits the cells from the first key >= from along the linked leaves
+        void scan(byte[] from, CellVisitor visitor) throws IOException {
+            Node leaf = findLeaf(from);
+            int index = leaf.search(from);
+            index = (index >= 0) ? index : -index - 1;
+            while(true) {
+                for(; index < leaf.keys.size(); index++) {
+                    if(!visitor.visit(leaf.keys.get(index), leaf.values.get(index))) {
+                        return;
+                    }
+                }
+                if(leaf.link == NONE) {
+                    return;
+                }
+                leaf = read(leaf.link);
+                index = 0;
+            }
+        }
+
+        private Node findLeaf(byte[] key) throws IOException {
+            Node node = read(this.root);
+            while(!node.isLeaf) {
+                node = read(node.children.get(node.childIndex(key)));
+            }
+            return node;
+        }
+
+        private Split put(int pageId, byte[] key, byte[] value) throws IOException {
+            Node node = read(pageId);
+            int inserted;
+            if(node.isLeaf) {
+                int index = node.search(key);
+                if(index >= 0) {
+                    node.values.set(index, value);
+                } else {
+                    node.keys.add(-index - 1, key);
+                    node.values.add(-index - 1, value);
+                }
+                inserted = (index >= 0) ? index : -index - 1;
+            } else {
+                int childIndex = node.childIndex(key);
+                Split split = put(node.children.get(childIndex), key, value);
+                if(split == null) {
+                    return null;
+                }
+                node.keys.add(childIndex, split.separator);
+                node.children.add(childIndex + 1, split.rightPage);
+                inserted = childIndex;
+            }
+
+            if(node.encodedSize() <= PAGE_SIZE) {
+                write(node);
+                return null;
+            }
+            return split(node, inserted == node.keys.size() - 1);
+        }
+
+        /*
+        Moves the upper half (by bytes) of an overflowing node to a new right sibling. When the overflow came from
+        appending (e.g., writeAll inserting in key order) only the last cell moves, so the pages left behind stay
+        full instead of half empty.
+         */
+        private Split split(Node node, boolean isAppend) throws IOException {
+            Node right = new Node(BTreeWordBankStore.this.pageCount++, node.isLeaf);
+            int at = isAppend ? node.keys.size() - 1 : node.splitIndex();
+            byte[] separator;
+            if(node.isLeaf) {
+                right.keys.addAll(node.keys.subList(at, node.keys.size()));
+                right.values.addAll(node.values.subList(at, node.values.size()));
+                node.keys.subList(at, node.keys.size()).clear();
+                node.values.subList(at, node.values.size()).clear();
+                right.link = node.link;
+                node.link = right.pageId;
+                separator = right.keys.get(0);
+            } else {
+                separator = node.keys.get(at);
+                right.keys.addAll(node.keys.subList(at + 1, node.keys.size()));
+                right.children.addAll(node.children.subList(at + 1, node.children.size()));
+                node.keys.subList(at, node.keys.size()).clear();
+                node.children.subList(at + 1, node.children.size()).clear();
+            }
+            write(node);
+            write(right);
+            return new Split(separator, right.pageId);
+        }
+    }
+
+    private static final class Node {
+        final int pageId;
+        final boolean isLeaf;
+        final ArrayList<byte[]> keys;
+        final ArrayList<byte[]> values;     // leaf only
+        final ArrayList<Integer> children;  // internal only, one more than keys
+        int link;                           // leaf only, the right sibling
+
+        Node(int pageId, boolean isLeaf) {
+            this.pageId = pageId;
+            this.isLeaf = isLeaf;
+            this.keys = new ArrayList<>();
+            this.values = new ArrayList<>();
+            this.children = new ArrayList<>();
+            this.link = NONE;
+        }
+
+        // index of the key, or -(insertion point) - 1
+        int search(byte[] key) {
+            int low = 0;
+            int high = this.keys.size() - 1;
+            while(low <= high) {
+                int mid = (low + high) >>> 1;
+                int comparison = Arrays.compareUnsigned(this.keys.get(mid), key);
+                if(comparison < 0) {
+                    low = mid + 1;
+                } else if(comparison > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        // the child whose keys include key, i.e., the number of separators <= key
+        int childIndex(byte[] key) {
+            int index = search(key);
+            return (index >= 0) ? index + 1 : -index - 1;
+        }
+
+        int cellSize(int index) {
+            return this.isLeaf ? 4 + this.keys.get(index).length + this.values.get(index).length
+                    : 2 + this.keys.get(index).length + 4;
+        }
+
+        int encodedSize() {
+            int size = NODE_HEADER;
+            for(int i = 0; i < this.keys.size(); i++) {
+                size += cellSize(i);
+            }
+            return size;
+        }
+
+        // first cell of the right half; cells are at most MAX_CELL so both halves fit a page
+        int splitIndex() {
+            int half = (encodedSize() - NODE_HEADER) / 2;
+            int size = 0;
+            int at = 0;
+            while(at < this.keys.size() - 1 && size < half) {
+                size += cellSize(at++);
+            }
+            return Math.max(1, Math.min(at, this.keys.size() - (this.isLeaf ? 1 : 2)));
+        }
+
+        void encode(ByteBuffer page) {
+            page.put(this.isLeaf ? LEAF : INTERNAL);
+            page.putShort((short) this.keys.size());
+            page.putInt(this.isLeaf ? this.link : this.children.get(0));
+            for(int i = 0; i < this.keys.size(); i++) {
+                byte[] key = this.keys.get(i);
+                page.putShort((short) key.length);
+                if(this.isLeaf) {
+                    page.putShort((short) this.values.get(i).length);
+                    page.put(key);
+                    page.put(this.values.get(i));
+                } else {
+                    page.put(key);
+                    page.putInt(this.children.get(i + 1));
+                }
+            }
+        }
+
+        static Node decode(int pageId, ByteBuffer page) throws IOException {
+            byte type = page.get();
+            if(type != LEAF && type != INTERNAL) {
+                throw new IOException("page " + pageId + " is not a word bank node");
+            }
+            Node node = new Node(pageId, type == LEAF);
+            int count = Short.toUnsignedInt(page.getShort());
+            int link = page.getInt();
+            if(node.isLeaf) {
+                node.link = link;
+            } else {
+                node.children.add(link);
+            }
+            for(int i = 0; i < count; i++) {
+                byte[] key = new byte[Short.toUnsignedInt(page.getShort())];
+                if(node.isLeaf) {
+                    byte[] value = new byte[Short.toUnsignedInt(page.getShort())];
+                    page.get(key);
+                    page.get(value);
+                    node.keys.add(key);
+                    node.values.add(value);
+                } else {
+                    page.get(key);
+                    node.keys.add(key);
+                    node.children.add(page.getInt());
+                }
+            }
+            return node;
+        }
+    }
+}
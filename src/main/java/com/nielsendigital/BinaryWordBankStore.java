@@ -0,0 +1,124 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/*
+BinaryWordBankStore keeps the word bank as a snapshot in the binary export format (see WordBankExporter), so a
+binary export can be opened as a word bank and loading skips the csv parsing. Entries are self-delimiting, so new
+ones are appended to the end; anything else writes a new snapshot next to the old one and moves it over.
+ */
+public class BinaryWordBankStore implements WordBankStore {
+    private static final Metrics.Timer READ_TIMER = Metrics.timer("wordbank.store.binary.read");
+
+    private final File file;
+
+    public BinaryWordBankStore(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public List<WordBankEntry> readAll(StringPool stringPool) throws IOException {
+        long start = READ_TIMER.start();
+        try {
+            ByteBuffer snapshot = ByteBuffer.wrap(Files.readAllBytes(this.file.toPath()));
+            byte[] magic = new byte[WordBankExporter.BINARY_MAGIC.length];
+            if(snapshot.remaining() > magic.length) {
+                snapshot.get(magic);
+            }
+            if(!Arrays.equals(magic, WordBankExporter.BINARY_MAGIC) || !snapshot.hasRemaining()
+                    || snapshot.get() != WordBankExporter.BINARY_VERSION) {
+                throw new IOException(this.file + " is not a version " + WordBankExporter.BINARY_VERSION +
+                        " binary word bank");
+            }
+            List<WordBankEntry> entries = new ArrayList<>();
+            while(snapshot.hasRemaining()) {
+                int entryStart = snapshot.position();
+                try {
+                    entries.add(readEntry(snapshot, stringPool));
+                } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+                    throw new IOException(this.file + " has a truncated or corrupt entry at byte " + entryStart, e);
+                }
+            }
+            return entries;
+        } finally {
+            READ_TIMER.stop(start);
+        }
+    }
+
+    @Override
+    public void writeAll(Collection<WordBankEntry> entries) throws IOException {
+        File tempFile = new File(this.file.getAbsoluteFile().getParentFile(), this.file.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            WordBankExporter exporter = new WordBankExporter(channel, WordBankExporter.ExportFormat.BINARY);
+            exporter.writeHeader();
+            exporter.writeEntries(entries);
+            exporter.flush();
+            channel.force(false);
+        }
+        Files.move(tempFile.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Override
+    public void append(Collection<WordBankEntry> entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            WordBankExporter exporter = new WordBankExporter(channel, WordBankExporter.ExportFormat.BINARY);
+            if(channel.size() == 0) {
+                exporter.writeHeader();
+            }
+            exporter.writeEntries(entries);
+            exporter.flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if(!this.file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    /*
+    Reads one entry written by WordBankExporter's binary format (also the B+tree store's record layout). The
+    grammar text is canonicalized through the pool if there is one.
+     */
+    static WordBankEntry readEntry(ByteBuffer source, StringPool stringPool) {
+        String foreignLanguage = readString(source);
+        String nativeLanguage = readString(source);
+        String grammar = readString(source);
+        String answer = readString(source);
+        return new WordBankEntry(foreignLanguage,
+                nativeLanguage,
+                (stringPool != null) ? stringPool.canonicalize(grammar) : grammar,
+                answer,
+                source.getLong(),
+                (int) LatencyHistogram.getVarLong(source),
+                (int) LatencyHistogram.getVarLong(source),
+                source.getDouble(),
+                source.get());
+    }
+
+    private static String readString(ByteBuffer source) {
+        int length = (int) LatencyHistogram.getVarLong(source);
+        String value = new String(source.array(), source.arrayOffset() + source.position(), length,
+                StandardCharsets.UTF_8);
+        source.position(source.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,139 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+CsvWordBankStore keeps the word bank in the original csv layout (see WordBank). The heading row is optional on
+read and always written; rows with too few or too many columns are reported and skipped. New entries are
+appended to the end of the file, anything else rewrites it.
+ */
+public class CsvWordBankStore implements WordBankStore {
+    private static final Metrics.Timer READ_TIMER = Metrics.timer("wordbank.readFileToEntries");
+    private static final String DELIMITER = ",";
+
+    private final File file;
+    private final boolean shouldPrintDetails;
+
+    public CsvWordBankStore(File file, boolean shouldPrintDetails) {
+        this.file = file;
+        this.shouldPrintDetails = shouldPrintDetails;
+    }
+
+    @Override
+    public List<WordBankEntry> readAll(StringPool stringPool) throws IOException {
+        long start = READ_TIMER.start();
+        try (Stream<WordBankEntry> entries = stream(stringPool)) {
+            List<WordBankEntry> wordList = entries.collect(Collectors.toCollection(ArrayList::new));
+            if(this.shouldPrintDetails) {
+                int count = 0;
+                for(WordBankEntry wbe : wordList) {
+                    System.out.println("Entry " + (++count) + " : " +
+                            wbe.getForeignLanguage() + " , " + wbe.getNativeLanguage());
+                }
+            }
+            return wordList;
+        } finally {
+            READ_TIMER.stop(start);
+        }
+    }
+
+    // parses the rows as they are read
+    @Override
+    public Stream<WordBankEntry> stream(StringPool stringPool) throws IOException {
+        return Files.lines(this.file.toPath(), StandardCharsets.UTF_8)
+                .filter(line -> !line.isBlank() && !isHeadingRow(line))
+                .map(line -> parseRow(line, stringPool))
+                .filter(Objects::nonNull);
+    }
+
+    // streams the heading row and entries straight to the file instead of building the whole csv in memory
+    @Override
+    public void writeAll(Collection<WordBankEntry> entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            WordBankExporter exporter = new WordBankExporter(channel, WordBankExporter.ExportFormat.CSV);
+            exporter.writeHeader();
+            exporter.writeEntries(entries);
+            exporter.flush();
+        }
+    }
+
+    @Override
+    public void append(Collection<WordBankEntry> entries) throws IOException {
+        try (FileChannel channel = FileChannel.open(this.file.toPath(),
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+            WordBankExporter exporter = new WordBankExporter(channel, WordBankExporter.ExportFormat.CSV);
+            long size = channel.size();
+            if(size == 0) {
+                exporter.writeHeader();
+            } else {
+                // a file edited by hand may not end with a line break
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                channel.read(lastByte, size - 1);
+                if(lastByte.get(0) != '\n') {
+                    channel.write(ByteBuffer.wrap(new byte[]{'\n'}), size);
+                }
+            }
+            channel.position(channel.size());
+            exporter.writeEntries(entries);
+            exporter.flush();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if(!this.file.isFile()) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    private static boolean isHeadingRow(String line) {
+        return line.startsWith(WordBank.EntryHeading.FOREIGN_LANGUAGE.getCamelCase() + DELIMITER);
+    }
+
+    // null (after reporting it) if the row doesn't have the word bank's columns
+    private static WordBankEntry parseRow(String line, StringPool stringPool) {
+        // use limit: -1 to include empty columns from csv
+        String[] cols = line.split(DELIMITER, -1);
+
+        // files written before the optional columns (e.g., Difficulty) were added are still read
+        if(cols.length < WordBank.EntryHeading.REQUIRED_COLUMNS || cols.length > WordBank.EntryHeading.values().length) {
+            System.out.println("ERROR: some lines in the CSV do not have the correct number of " +
+                    WordBank.EntryHeading.values().length + " columns." +
+                    "\nSkipped the entry " + line +
+                    "\ncols currently has a length of " + cols.length);
+            return null;
+        }
+
+        return new WordBankEntry(
+                getColumn(cols, WordBank.EntryHeading.FOREIGN_LANGUAGE),
+                getColumn(cols, WordBank.EntryHeading.NATIVE_LANGUAGE),
+                stringPool.canonicalize(getColumn(cols, WordBank.EntryHeading.GRAMMAR)),
+                getColumn(cols, WordBank.EntryHeading.ANSWER),
+                WordBank.sanitizeStringToTimeStamp(getColumn(cols, WordBank.EntryHeading.LAST_SEEN)),
+                WordBank.sanitizeStringToInt(getColumn(cols, WordBank.EntryHeading.COUNT_SEEN)),
+                WordBank.sanitizeStringToInt(getColumn(cols, WordBank.EntryHeading.COUNT_INCORRECT)),
+                WordBank.sanitizeStringToDouble(getColumn(cols, WordBank.EntryHeading.DIFFICULTY)),
+                WordBank.sanitizeStringToInt(getColumn(cols, WordBank.EntryHeading.LEITNER_BOX)));
+    }
+
+    // the column without its quotes; an optional column is empty in rows written before it existed
+    private static String getColumn(String[] cols, WordBank.EntryHeading heading) {
+        return (heading.getIndex() < cols.length) ? cols[heading.getIndex()].replace("\"", "") : "";
+    }
+}
@@ -0,0 +1,117 @@
+package com.nielsendigital;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/*
+DifficultyIndex keeps the ordinals of a WordBank entry snapshot sorted by Elo difficulty, so range and "nearest to
+my skill" queries are a binary search plus the k entries returned rather than a pass over the bank.
+
+Ratings change a little with every answer; update() slides the entry to its new place, which only shifts the
+entries between its old and new difficulty (usually a handful).
+ */
+public class DifficultyIndex {
+    private final WordBankEntry[] entries;
+    private final IdentityHashMap<WordBankEntry, Integer> ordinals;
+    private final double[] difficulties; // by ordinal
+    private final int[] sorted;          // ordinals by ascending difficulty
+    private final int[] positions;       // position in sorted, by ordinal
+
+    private DifficultyIndex(WordBankEntry[] entries) {
+        this.entries = entries;
+        this.ordinals = new IdentityHashMap<>(entries.length);
+        this.difficulties = new double[entries.length];
+        this.sorted = new int[entries.length];
+        this.positions = new int[entries.length];
+    }
+
+    public static DifficultyIndex build(WordBankEntry[] entries) {
+        DifficultyIndex index = new DifficultyIndex(entries);
+        Integer[] order = new Integer[entries.length];
+        for(int i = 0; i < entries.length; i++) {
+            index.ordinals.put(entries[i], i);
+            index.difficulties[i] = entries[i].getDifficulty();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(index.difficulties[a], index.difficulties[b]));
+        for(int position = 0; position < order.length; position++) {
+            index.sorted[position] = order[position];
+            index.positions[order[position]] = position;
+        }
+        return index;
+    }
+
+    // moves the entry to match its current difficulty, false if it isn't part of this index
+    public synchronized boolean update(WordBankEntry entry) {
+        Integer ordinal = this.ordinals.get(entry);
+        if(ordinal == null) {
+            return false;
+        }
+        double difficulty = entry.getDifficulty();
+        this.difficulties[ordinal] = difficulty;
+        int position = this.positions[ordinal];
+        while(position > 0 && this.difficulties[this.sorted[position - 1]] > difficulty) {
+            move(position - 1, position);
+            position--;
+        }
+        while(position < this.sorted.length - 1 && this.difficulties[this.sorted[position + 1]] < difficulty) {
+            move(position + 1, position);
+            position++;
+        }
+        this.sorted[position] = ordinal;
+        this.positions[ordinal] = position;
+        return true;
+    }
+
+    // every entry with min <= difficulty <= max, easiest first
+    public synchronized List<WordBankEntry> range(double min, double max) {
+        List<WordBankEntry> result = new ArrayList<>();
+        for(int position = lowerBound(min); position < this.sorted.length; position++) {
+            int ordinal = this.sorted[position];
+            if(this.difficulties[ordinal] > max) {
+                break;
+            }
+            result.add(this.entries[ordinal]);
+        }
+        return result;
+    }
+
+    // the count entries with difficulty closest to the target, walking outwards from it
+    public synchronized List<WordBankEntry> nearest(double target, int count) {
+        List<WordBankEntry> result = new ArrayList<>(Math.min(count, this.sorted.length));
+        int above = lowerBound(target);
+        int below = above - 1;
+        while(result.size() < count && (below >= 0 || above < this.sorted.length)) {
+            boolean takeBelow = above >= this.sorted.length || (below >= 0 &&
+                    target - this.difficulties[this.sorted[below]] <= this.difficulties[this.sorted[above]] - target);
+            result.add(this.entries[this.sorted[takeBelow ? below-- : above++]]);
+        }
+        return result;
+    }
+
+    public int size() {
+        return this.sorted.length;
+    }
+
+    private void move(int from, int to) {
+        this.sorted[to] = this.sorted[from];
+        this.positions[this.sorted[to]] = to;
+    }
+
+    // first position whose difficulty is >= value
+    private int lowerBound(double value) {
+        int low = 0;
+        int high = this.sorted.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(this.difficulties[this.sorted[mid]] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,325 @@
+package com.nielsendigital;
+
+import java.util.Arrays;
+
+/*
+EntryBitmap is a compressed set of entry ordinals in the style of a roaring bitmap. Ordinals are split by their
+high 16 bits into chunks; each chunk is stored as either
+    - a sorted char[] of the low 16 bits while it holds at most ARRAY_MAX values, or
+    - a 65536 bit long[1024] bitmap once it is denser than that,
+so sparse facets stay tiny and dense ones stay fast. and()/or() work chunk by chunk and return new bitmaps.
+
+Build with add() in any order; a bitmap is not thread safe while it is being built.
+ */
+public class EntryBitmap {
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;          // high 16 bits of each chunk, sorted
+    private Object[] containers;  // char[] (array container) or long[] (bitmap container)
+    private int[] cardinalities;
+    private int size;             // number of chunks
+
+    public EntryBitmap() {
+        this.keys = new char[4];
+        this.containers = new Object[4];
+        this.cardinalities = new int[4];
+        this.size = 0;
+    }
+
+    public static EntryBitmap of(int... ordinals) {
+        EntryBitmap bitmap = new EntryBitmap();
+        for(int ordinal : ordinals) {
+            bitmap.add(ordinal);
+        }
+        return bitmap;
+    }
+
+    // every ordinal in [0, count)
+    public static EntryBitmap range(int count) {
+        EntryBitmap bitmap = new EntryBitmap();
+        for(int i = 0; i < count; i++) {
+            bitmap.add(i);
+        }
+        return bitmap;
+    }
+
+    public void add(int ordinal) {
+        char key = (char) (ordinal >>> 16);
+        char low = (char) ordinal;
+        int index = chunkIndex(key);
+        if(index < 0) {
+            index = -index - 1;
+            insertChunk(index, key, new char[]{low}, 1);
+            return;
+        }
+
+        Object container = this.containers[index];
+        if(container instanceof long[] bits) {
+            long word = bits[low >>> 6];
+            long bit = 1L << low;
+            if((word & bit) == 0) {
+                bits[low >>> 6] = word | bit;
+                this.cardinalities[index]++;
+            }
+            return;
+        }
+
+        char[] values = (char[]) container;
+        int cardinality = this.cardinalities[index];
+        int position = Arrays.binarySearch(values, 0, cardinality, low);
+        if(position >= 0) {
+            return;
+        }
+        position = -position - 1;
+        if(cardinality == ARRAY_MAX) {
+            long[] bits = toBits(values, cardinality);
+            bits[low >>> 6] |= 1L << low;
+            this.containers[index] = bits;
+            this.cardinalities[index] = cardinality + 1;
+            return;
+        }
+        if(cardinality == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, values.length * 2));
+            this.containers[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, cardinality - position);
+        values[position] = low;
+        this.cardinalities[index] = cardinality + 1;
+    }
+
+    public boolean contains(int ordinal) {
+        int index = chunkIndex((char) (ordinal >>> 16));
+        if(index < 0) {
+            return false;
+        }
+        char low = (char) ordinal;
+        Object container = this.containers[index];
+        if(container instanceof long[] bits) {
+            return (bits[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, 0, this.cardinalities[index], low) >= 0;
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for(int i = 0; i < this.size; i++) {
+            total += this.cardinalities[i];
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public EntryBitmap and(EntryBitmap other) {
+        EntryBitmap result = new EntryBitmap();
+        int i = 0;
+        int j = 0;
+        while(i < this.size && j < other.size) {
+            if(this.keys[i] < other.keys[j]) {
+                i++;
+            } else if(this.keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                result.appendChunk(this.keys[i], andContainers(
+                        this.containers[i], this.cardinalities[i], other.containers[j], other.cardinalities[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public EntryBitmap or(EntryBitmap other) {
+        EntryBitmap result = new EntryBitmap();
+        int i = 0;
+        int j = 0;
+        while(i < this.size || j < other.size) {
+            if(j >= other.size || (i < this.size && this.keys[i] < other.keys[j])) {
+                result.appendChunk(this.keys[i], copyContainer(this.containers[i], this.cardinalities[i]));
+                i++;
+            } else if(i >= this.size || this.keys[i] > other.keys[j]) {
+                result.appendChunk(other.keys[j], copyContainer(other.containers[j], other.cardinalities[j]));
+                j++;
+            } else {
+                long[] bits = toBits(this.containers[i], this.cardinalities[i]);
+                orInto(bits, other.containers[j], other.cardinalities[j]);
+                result.appendChunk(this.keys[i], fromBits(bits));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    public int[] toArray() {
+        int[] ordinals = new int[cardinality()];
+        int count = 0;
+        for(int i = 0; i < this.size; i++) {
+            int high = this.keys[i] << 16;
+            Object container = this.containers[i];
+            if(container instanceof long[] bits) {
+                for(int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = bits[w];
+                    while(word != 0) {
+                        ordinals[count++] = high | (w << 6) | Long.numberOfTrailingZeros(word);
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                char[] values = (char[]) container;
+                for(int v = 0; v < this.cardinalities[i]; v++) {
+                    ordinals[count++] = high | values[v];
+                }
+            }
+        }
+        return ordinals;
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ Containers ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    private static Object andContainers(Object a, int aCardinality, Object b, int bCardinality) {
+        if(a instanceof long[] aBits && b instanceof long[] bBits) {
+            long[] bits = new long[BITMAP_WORDS];
+            for(int w = 0; w < BITMAP_WORDS; w++) {
+                bits[w] = aBits[w] & bBits[w];
+            }
+            return fromBits(bits);
+        }
+        if(a instanceof long[] aBits) {
+            return filterArray((char[]) b, bCardinality, aBits);
+        }
+        if(b instanceof long[] bBits) {
+            return filterArray((char[]) a, aCardinality, bBits);
+        }
+        // both sorted arrays: merge intersection
+        char[] aValues = (char[]) a;
+        char[] bValues = (char[]) b;
+        char[] values = new char[Math.min(aCardinality, bCardinality)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while(i < aCardinality && j < bCardinality) {
+            if(aValues[i] < bValues[j]) {
+                i++;
+            } else if(aValues[i] > bValues[j]) {
+                j++;
+            } else {
+                values[count++] = aValues[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    private static char[] filterArray(char[] values, int cardinality, long[] bits) {
+        char[] result = new char[cardinality];
+        int count = 0;
+        for(int i = 0; i < cardinality; i++) {
+            char value = values[i];
+            if((bits[value >>> 6] & (1L << value)) != 0) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static Object copyContainer(Object container, int cardinality) {
+        if(container instanceof long[] bits) {
+            return bits.clone();
+        }
+        return Arrays.copyOf((char[]) container, cardinality);
+    }
+
+    private static long[] toBits(Object container, int cardinality) {
+        if(container instanceof long[] bits) {
+            return bits.clone();
+        }
+        long[] bits = new long[BITMAP_WORDS];
+        orInto(bits, container, cardinality);
+        return bits;
+    }
+
+    private static void orInto(long[] bits, Object container, int cardinality) {
+        if(container instanceof long[] otherBits) {
+            for(int w = 0; w < BITMAP_WORDS; w++) {
+                bits[w] |= otherBits[w];
+            }
+            return;
+        }
+        char[] values = (char[]) container;
+        for(int i = 0; i < cardinality; i++) {
+            bits[values[i] >>> 6] |= 1L << values[i];
+        }
+    }
+
+    // a bitmap container, or an array container when it is sparse enough
+    private static Object fromBits(long[] bits) {
+        int cardinality = 0;
+        for(long word : bits) {
+            cardinality += Long.bitCount(word);
+        }
+        if(cardinality > ARRAY_MAX) {
+            return bits;
+        }
+        char[] values = new char[cardinality];
+        int count = 0;
+        for(int w = 0; w < BITMAP_WORDS; w++) {
+            long word = bits[w];
+            while(word != 0) {
+                values[count++] = (char) ((w << 6) | Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return values;
+    }
+
+    private static int containerCardinality(Object container) {
+        if(container instanceof long[] bits) {
+            int cardinality = 0;
+            for(long word : bits) {
+                cardinality += Long.bitCount(word);
+            }
+            return cardinality;
+        }
+        return ((char[]) container).length;
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ Chunks ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    private int chunkIndex(char key) {
+        // chunks are usually appended in order, so check the last one first
+        if(this.size > 0 && this.keys[this.size - 1] == key) {
+            return this.size - 1;
+        }
+        return Arrays.binarySearch(this.keys, 0, this.size, key);
+    }
+
+    // only used by and()/or(), which produce chunks in key order; empty containers are dropped
+    private void appendChunk(char key, Object container) {
+        int cardinality = containerCardinality(container);
+        if(cardinality == 0) {
+            return;
+        }
+        insertChunk(this.size, key, container, cardinality);
+    }
+
+    private void insertChunk(int index, char key, Object container, int cardinality) {
+        if(this.size == this.keys.length) {
+            int capacity = this.keys.length * 2;
+            this.keys = Arrays.copyOf(this.keys, capacity);
+            this.containers = Arrays.copyOf(this.containers, capacity);
+            this.cardinalities = Arrays.copyOf(this.cardinalities, capacity);
+        }
+        System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+        System.arraycopy(this.containers, index, this.containers, index + 1, this.size - index);
+        System.arraycopy(this.cardinalities, index, this.cardinalities, index + 1, this.size - index);
+        this.keys[index] = key;
+        this.containers[index] = container;
+        this.cardinalities[index] = cardinality;
+        this.size++;
+    }
+}
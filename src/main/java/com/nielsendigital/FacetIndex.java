@@ -0,0 +1,199 @@
+package com.nielsendigital;
+
+import com.nielsendigital.UI.Dialogs.WordBankUI.Conjugation;
+import com.nielsendigital.UI.Dialogs.WordBankUI.Declension;
+import com.nielsendigital.UI.Dialogs.WordBankUI.PartOfSpeech;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/*
+FacetIndex keeps one EntryBitmap per facet value over the ordinals of a WordBank entry snapshot, e.g., every noun,
+every plural, every word missed at least half the time. A QuizFilter then resolves to its entries with a handful
+of bitmap ORs (values of one facet) and ANDs (across facets) instead of a pass over the word bank.
+
+The grammar facets come from the entries' GrammarCode; error rate and last seen come from the quiz statistics
+when the index is built. WordBank rebuilds the index after the word list changes, after a quiz's graded entries are
+saved and when the last seen windows have gone stale.
+ */
+public class FacetIndex {
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final WordBankEntry[] entries;
+    private final EntryBitmap[][] bitmaps; // [facet][value]
+    private final long builtAt;
+
+    private FacetIndex(WordBankEntry[] entries, EntryBitmap[][] bitmaps, long builtAt) {
+        this.entries = entries;
+        this.bitmaps = bitmaps;
+        this.builtAt = builtAt;
+    }
+
+    public static FacetIndex build(WordBankEntry[] entries, int[] grammarCodes) {
+        long now = System.currentTimeMillis();
+        Facet[] facets = Facet.values();
+        EntryBitmap[][] bitmaps = new EntryBitmap[facets.length][];
+        int[][] grammarMasks = new int[facets.length][];
+        for(Facet facet : facets) {
+            bitmaps[facet.ordinal()] = new EntryBitmap[facet.getValues().length];
+            for(int v = 0; v < facet.getValues().length; v++) {
+                bitmaps[facet.ordinal()][v] = new EntryBitmap();
+            }
+            grammarMasks[facet.ordinal()] = grammarMasks(facet);
+        }
+
+        for(int ordinal = 0; ordinal < entries.length; ordinal++) {
+            int code = grammarCodes[ordinal];
+            for(Facet facet : facets) {
+                int[] masks = grammarMasks[facet.ordinal()];
+                if(masks == null) {
+                    continue;
+                }
+                for(int v = 0; v < masks.length; v++) {
+                    if((code & masks[v]) != 0) {
+                        bitmaps[facet.ordinal()][v].add(ordinal);
+                    }
+                }
+            }
+            WordBankEntry wbe = entries[ordinal];
+            bitmaps[Facet.ERROR_RATE.ordinal()][errorRateBand(wbe)].add(ordinal);
+            bitmaps[Facet.LAST_SEEN.ordinal()][lastSeenWindow(wbe, now)].add(ordinal);
+        }
+        return new FacetIndex(entries, bitmaps, now);
+    }
+
+    public EntryBitmap getBitmap(Facet facet, int value) {
+        return this.bitmaps[facet.ordinal()][value];
+    }
+
+    public WordBankEntry getEntry(int ordinal) {
+        return this.entries[ordinal];
+    }
+
+    public int size() {
+        return this.entries.length;
+    }
+
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    // the last seen windows are relative to when the index was built
+    public boolean isStale(long now) {
+        return now - this.builtAt > TimeUnit.HOURS.toMillis(1);
+    }
+
+    // the GrammarCode bits of each value of a grammar facet, or null for the statistics facets
+    private static int[] grammarMasks(Facet facet) {
+        String[] values = facet.getValues();
+        int[] masks = new int[values.length];
+        switch(facet) {
+            case PART_OF_SPEECH -> {
+                for(PartOfSpeech pos : PartOfSpeech.values()) {
+                    masks[pos.ordinal()] = GrammarCode.of(pos);
+                }
+            }
+            case GENDER -> {
+                for(Declension declension : Declension.values()) {
+                    masks[indexOf(values, declension.getGender())] |= GrammarCode.of(declension);
+                }
+            }
+            case NUMBER -> {
+                for(Declension declension : Declension.values()) {
+                    masks[indexOf(values, declension.getNumber())] |= GrammarCode.of(declension);
+                }
+                for(Conjugation conjugation : Conjugation.values()) {
+                    String[] personNumber = conjugation.getText().split(" ");
+                    masks[indexOf(values, personNumber[personNumber.length - 1])] |= GrammarCode.of(conjugation);
+                }
+            }
+            case PERSON -> {
+                for(Conjugation conjugation : Conjugation.values()) {
+                    String person = conjugation.getText().split(" ")[0];
+                    masks[indexOf(values, person + " person")] |= GrammarCode.of(conjugation);
+                }
+            }
+            default -> {
+                return null;
+            }
+        }
+        return masks;
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for(int i = 0; i < values.length; i++) {
+            if(values[i].equals(value)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("ERROR: unknown facet value " + value);
+    }
+
+    // index into Facet.ERROR_RATE's values
+    static int errorRateBand(WordBankEntry wbe) {
+        if(wbe.getCountSeen() == 0) {
+            return 0;
+        }
+        double errorRate = (double) wbe.getCountIncorrect() / wbe.getCountSeen();
+        if(wbe.getCountIncorrect() == 0) {
+            return 1;
+        } else if(errorRate < 0.2) {
+            return 2;
+        } else if(errorRate < 0.5) {
+            return 3;
+        }
+        return 4;
+    }
+
+    // index into Facet.LAST_SEEN's values
+    static int lastSeenWindow(WordBankEntry wbe, long now) {
+        if(wbe.getCountSeen() == 0) {
+            return 0;
+        }
+        long age = now - wbe.getLastSeenMillis();
+        if(age < DAY_MILLIS) {
+            return 1;
+        } else if(age < 7 * DAY_MILLIS) {
+            return 2;
+        } else if(age < 30 * DAY_MILLIS) {
+            return 3;
+        }
+        return 4;
+    }
+
+    public enum Facet {
+        PART_OF_SPEECH("part of speech", partsOfSpeech()),
+        GENDER("gender", new String[]{"masculine", "feminine", "neuter"}),
+        NUMBER("number", new String[]{"singular", "plural"}),
+        PERSON("person", new String[]{"1st person", "2nd person", "3rd person"}),
+        ERROR_RATE("error rate", new String[]{"never seen", "never missed", "missed under 20%",
+                "missed 20% - 50%", "missed 50% or more"}),
+        LAST_SEEN("last seen", new String[]{"never seen", "in the last day", "in the last week",
+                "in the last month", "over a month ago"});
+
+        private final String text;
+        private final String[] values;
+
+        Facet(String text, String[] values) {
+            this.text = text;
+            this.values = values;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String[] getValues() {
+            return values;
+        }
+
+        private static String[] partsOfSpeech() {
+            PartOfSpeech[] partsOfSpeech = PartOfSpeech.values();
+            String[] values = new String[partsOfSpeech.length];
+            for(int i = 0; i < partsOfSpeech.length; i++) {
+                values[i] = partsOfSpeech[i].getText().toLowerCase(Locale.ROOT);
+            }
+            return values;
+        }
+    }
+}
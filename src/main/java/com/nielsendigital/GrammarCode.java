@@ -0,0 +1,245 @@
+package com.nielsendigital;
+
+import com.nielsendigital.UI.Dialogs.WordBankUI.Conjugation;
+import com.nielsendigital.UI.Dialogs.WordBankUI.Declension;
+import com.nielsendigital.UI.Dialogs.WordBankUI.GrammaticalCase;
+import com.nielsendigital.UI.Dialogs.WordBankUI.PartOfSpeech;
+import com.nielsendigital.UI.Dialogs.WordBankUI.PosChange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+GrammarCode packs the grammar of a WordBankEntry into an int with one bit per PartOfSpeech, Declension,
+Conjugation and GrammaticalCase. Grammar searches and filters become bitmask tests instead of string scans, and
+the text is only rendered for display.
+
+    bits  0 -  7 : PartOfSpeech
+    bits  8 - 13 : Declension
+    bits 14 - 19 : Conjugation
+    bits 20 - 25 : GrammaticalCase
+
+A Query is a set of facet masks: an entry matches when it has at least one bit of every mask, e.g.,
+"dative plural nouns" is (NOUN) and (all plural declensions and conjugations) and (DATIVE).
+ */
+public class GrammarCode {
+    public static final int POS_SHIFT = 0;
+    public static final int DECLENSION_SHIFT = 8;
+    public static final int CONJUGATION_SHIFT = 14;
+    public static final int CASE_SHIFT = 20;
+
+    public static final int POS_MASK = mask(POS_SHIFT, PartOfSpeech.values().length);
+    public static final int DECLENSION_MASK = mask(DECLENSION_SHIFT, Declension.values().length);
+    public static final int CONJUGATION_MASK = mask(CONJUGATION_SHIFT, Conjugation.values().length);
+    public static final int CASE_MASK = mask(CASE_SHIFT, GrammaticalCase.values().length);
+
+    // grammar text repeats a lot, so each distinct value is only parsed once
+    private static final ConcurrentHashMap<String, Integer> parsed = new ConcurrentHashMap<>();
+
+    public static int of(PartOfSpeech pos) {
+        return 1 << (POS_SHIFT + pos.ordinal());
+    }
+
+    public static int of(Declension declension) {
+        return 1 << (DECLENSION_SHIFT + declension.ordinal());
+    }
+
+    public static int of(Conjugation conjugation) {
+        return 1 << (CONJUGATION_SHIFT + conjugation.ordinal());
+    }
+
+    public static int of(GrammaticalCase grammaticalCase) {
+        return 1 << (CASE_SHIFT + grammaticalCase.ordinal());
+    }
+
+    public static int of(PartOfSpeech pos, List<? extends PosChange> posChanges) {
+        int code = (pos == null) ? 0 : of(pos);
+        for(PosChange posChange : posChanges) {
+            if(posChange instanceof Declension declension) {
+                code |= of(declension);
+            } else if(posChange instanceof Conjugation conjugation) {
+                code |= of(conjugation);
+            }
+        }
+        return code;
+    }
+
+    public static boolean hasAll(int code, int bits) {
+        return (code & bits) == bits;
+    }
+
+    // the multi-line grammar text, i.e., part of speech then one line per declension/conjugation and case
+    public static String render(int code) {
+        List<String> lines = new ArrayList<>();
+        for(PartOfSpeech pos : PartOfSpeech.values()) {
+            if(hasAll(code, of(pos))) {
+                lines.add(pos.getText());
+            }
+        }
+        for(Declension declension : Declension.values()) {
+            if(hasAll(code, of(declension))) {
+                lines.add(declension.toGrammarString());
+            }
+        }
+        for(Conjugation conjugation : Conjugation.values()) {
+            if(hasAll(code, of(conjugation))) {
+                lines.add(conjugation.toGrammarString());
+            }
+        }
+        for(GrammaticalCase grammaticalCase : GrammaticalCase.values()) {
+            if(hasAll(code, of(grammaticalCase))) {
+                lines.add(grammaticalCase.getText());
+            }
+        }
+        return String.join("\n", lines);
+    }
+
+    /*
+    Reads the grammar column of a word bank file. Lines are split on new lines (or the line separators they are
+    saved as); anything that isn't a known part of speech, declension, conjugation or case (e.g., notes) is ignored.
+     */
+    public static int parse(String grammar) {
+        if(grammar == null || grammar.isEmpty()) {
+            return 0;
+        }
+        return parsed.computeIfAbsent(grammar, GrammarCode::parseText);
+    }
+
+    private static int parseText(String grammar) {
+        int code = 0;
+        String[] lines = grammar.toLowerCase(Locale.ROOT).split("[\n\u2028]");
+        for(int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if(i == 0) {
+                // e.g., "determiner (accusative)"
+                String firstWord = line.split("[ (]", 2)[0];
+                for(PartOfSpeech pos : PartOfSpeech.values()) {
+                    if(firstWord.equals(pos.getText().toLowerCase(Locale.ROOT))) {
+                        code |= of(pos);
+                    }
+                }
+            }
+            for(Declension declension : Declension.values()) {
+                if(line.equals(declension.toGrammarString())) {
+                    code |= of(declension);
+                }
+            }
+            if(line.startsWith("masc/fem/neu")) {
+                // all genders, for the number given or both
+                boolean isSingular = !line.contains("plural");
+                boolean isPlural = !line.contains("singular");
+                for(Declension declension : Declension.values()) {
+                    if((isSingular && declension.getNumber().equals("singular")) ||
+                            (isPlural && declension.getNumber().equals("plural"))) {
+                        code |= of(declension);
+                    }
+                }
+            }
+            for(Conjugation conjugation : Conjugation.values()) {
+                if(line.equals(conjugation.getText())) {
+                    code |= of(conjugation);
+                }
+            }
+            for(GrammaticalCase grammaticalCase : GrammaticalCase.values()) {
+                if(line.contains(grammaticalCase.getText())) {
+                    code |= of(grammaticalCase);
+                }
+            }
+        }
+        return code;
+    }
+
+    /*
+    Turns a search term like "dative plural nouns" into a Query. Returns null if any word isn't a grammar term, so
+    the caller can fall back to a plain text search.
+     */
+    public static Query parseQuery(String term) {
+        String[] words = term.toLowerCase(Locale.ROOT).trim().split("[\\s,]+");
+        int posMask = 0;
+        int genderMask = 0;
+        int numberMask = 0;
+        int personMask = 0;
+        int caseMask = 0;
+
+        for(String word : words) {
+            if(word.isEmpty() || word.equals("person")) {
+                continue;
+            }
+            boolean isKnown = false;
+            for(PartOfSpeech pos : PartOfSpeech.values()) {
+                String text = pos.getText().toLowerCase(Locale.ROOT);
+                if(word.equals(text) || word.equals(text + "s")) {
+                    posMask |= of(pos);
+                    isKnown = true;
+                }
+            }
+            for(Declension declension : Declension.values()) {
+                if(word.equals(declension.getGender())) {
+                    genderMask |= of(declension);
+                    isKnown = true;
+                }
+                if(word.equals(declension.getNumber())) {
+                    numberMask |= of(declension);
+                    isKnown = true;
+                }
+            }
+            for(Conjugation conjugation : Conjugation.values()) {
+                String[] personNumber = conjugation.getText().split(" ");
+                if(word.equals(personNumber[0])) {
+                    personMask |= of(conjugation);
+                    isKnown = true;
+                }
+                if(word.equals(personNumber[personNumber.length - 1])) {
+                    numberMask |= of(conjugation);
+                    isKnown = true;
+                }
+            }
+            for(GrammaticalCase grammaticalCase : GrammaticalCase.values()) {
+                if(word.equals(grammaticalCase.getText())) {
+                    caseMask |= of(grammaticalCase);
+                    isKnown = true;
+                }
+            }
+            if(!isKnown) {
+                return null;
+            }
+        }
+
+        int[] masks = new int[]{posMask, genderMask, numberMask, personMask, caseMask};
+        int count = 0;
+        for(int mask : masks) {
+            if(mask != 0) {
+                masks[count++] = mask;
+            }
+        }
+        if(count == 0) {
+            return null;
+        }
+        int[] facets = new int[count];
+        System.arraycopy(masks, 0, facets, 0, count);
+        return new Query(facets);
+    }
+
+    private static int mask(int shift, int bits) {
+        return ((1 << bits) - 1) << shift;
+    }
+
+    public static class Query {
+        private final int[] facetMasks;
+
+        private Query(int[] facetMasks) {
+            this.facetMasks = facetMasks;
+        }
+
+        public boolean matches(int code) {
+            for(int mask : this.facetMasks) {
+                if((code & mask) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.nielsendigital;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+LatencyHistogram counts answer latencies in log-linear buckets (HdrHistogram style) kept in a primitive array.
+Latencies are recorded in milliseconds. Values below 2^SUB_BUCKET_BITS get a bucket each, above that every power
+of two is split into 2^SUB_BUCKET_BITS sub-buckets, which keeps the relative error below 12.5% from 1ms up to
+MAX_MILLIS. The counts array only grows as far as the slowest answer recorded, so most histograms hold a few
+dozen ints.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 21;
+    public static final long MAX_MILLIS = (1L << (MAX_EXPONENT + 1)) - 1; // ~70 minutes
+    private static final int[] EMPTY = new int[0];
+
+    private int[] counts;
+    private long totalCount;
+    private long totalMillis;
+
+    public LatencyHistogram() {
+        this.counts = EMPTY;
+        this.totalCount = 0;
+        this.totalMillis = 0;
+    }
+
+    public void recordNanos(long nanos) {
+        recordMillis(nanos / 1_000_000L);
+    }
+
+    public void recordMillis(long millis) {
+        long value = Math.max(0, Math.min(millis, MAX_MILLIS));
+        int index = bucketIndex(value);
+        if(index >= this.counts.length) {
+            this.counts = Arrays.copyOf(this.counts, index + 1);
+        }
+        this.counts[index]++;
+        this.totalCount++;
+        this.totalMillis += value;
+    }
+
+    public void add(LatencyHistogram other) {
+        if(other.counts.length > this.counts.length) {
+            this.counts = Arrays.copyOf(this.counts, other.counts.length);
+        }
+        for(int i = 0; i < other.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.totalCount += other.totalCount;
+        this.totalMillis += other.totalMillis;
+    }
+
+    // the upper bound (in ms) of the bucket holding the requested percentile, 0 when nothing was recorded
+    public long getPercentileMillis(double percentile) {
+        if(this.totalCount == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil((percentile / 100.0) * this.totalCount);
+        rank = Math.max(1, Math.min(rank, this.totalCount));
+        long seen = 0;
+        for(int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if(seen >= rank) {
+                return bucketUpperBound(i);
+            }
+        }
+        return bucketUpperBound(this.counts.length - 1);
+    }
+
+    public long getMedianMillis() {
+        return getPercentileMillis(50);
+    }
+
+    public double getMeanMillis() {
+        return (this.totalCount == 0) ? 0 : (double) this.totalMillis / this.totalCount;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    static int bucketIndex(long value) {
+        if(value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if(index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        long lowerBound = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ Encoding ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+    // [varint bucketCount][varint count]... [varint totalMillis]; empty buckets take a single byte
+
+    public int encodedSize() {
+        int size = varLongSize(this.counts.length) + varLongSize(this.totalMillis);
+        for(int count : this.counts) {
+            size += varLongSize(count);
+        }
+        return size;
+    }
+
+    public void encode(ByteBuffer target) {
+        putVarLong(target, this.counts.length);
+        for(int count : this.counts) {
+            putVarLong(target, count);
+        }
+        putVarLong(target, this.totalMillis);
+    }
+
+    public static LatencyHistogram decode(ByteBuffer source) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int length = (int) getVarLong(source);
+        histogram.counts = (length == 0) ? EMPTY : new int[length];
+        for(int i = 0; i < length; i++) {
+            histogram.counts[i] = (int) getVarLong(source);
+            histogram.totalCount += histogram.counts[i];
+        }
+        histogram.totalMillis = getVarLong(source);
+        return histogram;
+    }
+
+    static int varLongSize(long value) {
+        int size = 1;
+        while((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static void putVarLong(ByteBuffer target, long value) {
+        while((value & ~0x7FL) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+    }
+
+    static long getVarLong(ByteBuffer source) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = source.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return value;
+    }
+}
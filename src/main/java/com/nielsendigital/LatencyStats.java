@@ -0,0 +1,119 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+LatencyStats keeps a LatencyHistogram of correct answers per WordBankEntry (keyed by entry id), i.e., how long a
+learner hesitated before getting a word right. The histograms are stored in latency.bin in the word bank's event
+log directory so they survive between sessions without widening the word bank csv.
+
+File layout:
+    "LLLH" + version byte + [int entries], then per entry [long entryId][encoded LatencyHistogram]
+ */
+public class LatencyStats {
+    private static final byte[] MAGIC = {'L', 'L', 'L', 'H'};
+    private static final byte VERSION = 1;
+    private static final String FILE_NAME = "latency.bin";
+
+    private final File statsFile;
+    private final HashMap<Long, LatencyHistogram> histograms;
+    private boolean isDirty;
+
+    private LatencyStats(File statsFile) {
+        this.statsFile = statsFile;
+        this.histograms = new HashMap<>();
+        this.isDirty = false;
+    }
+
+    public static LatencyStats load(File eventLogDirectory) {
+        LatencyStats stats = new LatencyStats(new File(eventLogDirectory, FILE_NAME));
+        if(!stats.statsFile.isFile()) {
+            return stats;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(stats.statsFile.toPath()));
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            if(!Arrays.equals(magic, MAGIC) || buffer.get() != VERSION) {
+                System.out.println("ERROR: ignoring unreadable latency statistics in " + stats.statsFile);
+                return stats;
+            }
+            int entries = buffer.getInt();
+            for(int i = 0; i < entries; i++) {
+                long entryId = buffer.getLong();
+                stats.histograms.put(entryId, LatencyHistogram.decode(buffer));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("ERROR: could not read latency statistics from " + stats.statsFile);
+            e.printStackTrace();
+            stats.histograms.clear();
+        }
+        return stats;
+    }
+
+    public synchronized void recordCorrectAnswer(WordBankEntry entry, long responseNanos) {
+        this.histograms.computeIfAbsent(entry.getEntryId(), id -> new LatencyHistogram()).recordNanos(responseNanos);
+        this.isDirty = true;
+    }
+
+    /*
+    The median latency of the entry's correct answers in milliseconds, or -1 when it has never been answered
+    correctly. Read under the lock, since recordCorrectAnswer() may be growing the histogram meanwhile.
+     */
+    public synchronized long getMedianMillis(WordBankEntry entry) {
+        LatencyHistogram histogram = this.histograms.get(entry.getEntryId());
+        if(histogram == null || histogram.getTotalCount() == 0) {
+            return -1;
+        }
+        return histogram.getMedianMillis();
+    }
+
+    public synchronized boolean save() {
+        if(!this.isDirty) {
+            return true;
+        }
+
+        int size = MAGIC.length + 1 + 4;
+        for(LatencyHistogram histogram : this.histograms.values()) {
+            size += 8 + histogram.encodedSize();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put(MAGIC).put(VERSION).putInt(this.histograms.size());
+        this.histograms.forEach((entryId, histogram) -> {
+            buffer.putLong(entryId);
+            histogram.encode(buffer);
+        });
+        buffer.flip();
+
+        // write a temp file and move it over the old one so a crash never leaves half a file behind
+        File parent = this.statsFile.getParentFile();
+        File tempFile = new File(parent, FILE_NAME + ".tmp");
+        try {
+            if(!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("could not create " + parent);
+            }
+            try (FileChannel channel = FileChannel.open(tempFile.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while(buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tempFile.toPath(), this.statsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            this.isDirty = false;
+            return true;
+        } catch (IOException e) {
+            System.out.println("ERROR: could not save latency statistics to " + this.statsFile);
+            e.printStackTrace();
+        }
+        return false;
+    }
+}
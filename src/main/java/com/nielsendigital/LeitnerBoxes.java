@@ -0,0 +1,194 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/*
+LeitnerBoxes sorts the entries of a WordBank snapshot into BOXES boxes. Every word starts in box 0; a right answer
+moves it up one box and a wrong answer sends it back to box 0. Box i is due every 2^i Leitner sessions, so well
+known words come up less and less often.
+
+Each box is an intrusive ring queue over entry ordinals: next[ordinal] links an entry to the one after it in its
+box and the box only remembers its tail (the head is next[tail]). Drawing k cards and putting an answered card at
+the back of its new box are O(1) per card, with no sorting and no scan of the bank.
+
+Box membership is saved with the entry (the LeitnerBox column), the session count in leitner.properties in the
+word bank's event log directory. Only a completed quiz counts as a session; the cards of a quiz that didn't get to
+them go back to the front of their boxes (putBack()).
+ */
+public class LeitnerBoxes {
+    public static final int BOXES = 5;
+    private static final int NONE = -1;
+    private static final String FILE_NAME = "leitner.properties";
+    private static final String SESSIONS = "sessions";
+
+    private final WordBankEntry[] entries;
+    private final IdentityHashMap<WordBankEntry, Integer> ordinals;
+    private final int[] next;
+    private final int[] tails;
+    private final int[] sizes;
+
+    private LeitnerBoxes(WordBankEntry[] entries) {
+        this.entries = entries;
+        this.ordinals = new IdentityHashMap<>(entries.length);
+        this.next = new int[entries.length];
+        this.tails = new int[BOXES];
+        this.sizes = new int[BOXES];
+        Arrays.fill(this.next, NONE);
+        Arrays.fill(this.tails, NONE);
+    }
+
+    public static LeitnerBoxes build(WordBankEntry[] entries) {
+        LeitnerBoxes boxes = new LeitnerBoxes(entries);
+        for(int ordinal = 0; ordinal < entries.length; ordinal++) {
+            boxes.ordinals.put(entries[ordinal], ordinal);
+            boxes.enqueue(entries[ordinal].getLeitnerBox(), ordinal);
+        }
+        return boxes;
+    }
+
+    public static boolean isDue(int box, long session) {
+        return session % (1L << box) == 0;
+    }
+
+    /*
+    Takes up to count cards from the front of the boxes due in this session, lowest box first. The cards stay out
+    of the boxes until they are answered or put back.
+     */
+    public synchronized List<WordBankEntry> draw(int count, long session) {
+        List<WordBankEntry> drawn = new ArrayList<>(count);
+        for(int box = 0; box < BOXES && drawn.size() < count; box++) {
+            if(!isDue(box, session)) {
+                continue;
+            }
+            while(drawn.size() < count && this.sizes[box] > 0) {
+                drawn.add(this.entries[dequeue(box)]);
+            }
+        }
+        return drawn;
+    }
+
+    // moves the card up a box if the answer was right or back to box 0 if not, and queues it at the back
+    public synchronized int answer(WordBankEntry entry, boolean isCorrect) {
+        int box = isCorrect ? Math.min(BOXES - 1, entry.getLeitnerBox() + 1) : 0;
+        entry.setLeitnerBox(box);
+        Integer ordinal = this.ordinals.get(entry);
+        if(ordinal != null && this.next[ordinal] == NONE) {
+            enqueue(box, ordinal);
+        }
+        return box;
+    }
+
+    // returns drawn cards that weren't answered to the front of their boxes, in the order they were drawn
+    public synchronized void putBack(List<WordBankEntry> drawn) {
+        for(int i = drawn.size() - 1; i >= 0; i--) {
+            WordBankEntry entry = drawn.get(i);
+            Integer ordinal = this.ordinals.get(entry);
+            if(ordinal != null && this.next[ordinal] == NONE) {
+                push(entry.getLeitnerBox(), ordinal);
+            }
+        }
+    }
+
+    /*
+    The first session from this one on in which a box holding cards is due, or -1 if every box is empty. Sessions
+    that would only review empty boxes are skipped, since a quiz in them would have nothing to ask.
+     */
+    public synchronized long firstDueSession(long session) {
+        for(long s = session; s < session + (1L << (BOXES - 1)); s++) {
+            for(int box = 0; box < BOXES; box++) {
+                if(this.sizes[box] > 0 && isDue(box, s)) {
+                    return s;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public synchronized int size(int box) {
+        return this.sizes[box];
+    }
+
+    private void enqueue(int box, int ordinal) {
+        int tail = this.tails[box];
+        if(tail == NONE) {
+            this.next[ordinal] = ordinal;
+        } else {
+            this.next[ordinal] = this.next[tail];
+            this.next[tail] = ordinal;
+        }
+        this.tails[box] = ordinal;
+        this.sizes[box]++;
+    }
+
+    // queues the card at the front of the box instead
+    private void push(int box, int ordinal) {
+        int tail = this.tails[box];
+        if(tail == NONE) {
+            this.next[ordinal] = ordinal;
+            this.tails[box] = ordinal;
+        } else {
+            this.next[ordinal] = this.next[tail];
+            this.next[tail] = ordinal;
+        }
+        this.sizes[box]++;
+    }
+
+    private int dequeue(int box) {
+        int tail = this.tails[box];
+        int head = this.next[tail];
+        if(head == tail) {
+            this.tails[box] = NONE;
+        } else {
+            this.next[tail] = this.next[head];
+        }
+        this.next[head] = NONE;
+        this.sizes[box]--;
+        return head;
+    }
+
+    // the number of the next Leitner session, i.e., the completed ones counted in the event log directory
+    public static synchronized long currentSession(File eventLogDirectory) {
+        File sessionsFile = new File(eventLogDirectory, FILE_NAME);
+        if(!sessionsFile.isFile()) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(sessionsFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            return Long.parseLong(properties.getProperty(SESSIONS, "0"));
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("ERROR: could not read the Leitner session count from " + sessionsFile);
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    // counts a completed quiz of the session, so the next quiz is for the session after it
+    public static synchronized void completeSession(File eventLogDirectory, long session) {
+        File sessionsFile = new File(eventLogDirectory, FILE_NAME);
+        Properties properties = new Properties();
+        properties.setProperty(SESSIONS, Long.toString(Math.max(session + 1, currentSession(eventLogDirectory))));
+        try {
+            if(!eventLogDirectory.isDirectory() && !eventLogDirectory.mkdirs()) {
+                throw new IOException("could not create " + eventLogDirectory);
+            }
+            try (Writer writer = new FileWriter(sessionsFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, "Leitner sessions");
+            }
+        } catch (IOException e) {
+            System.out.println("ERROR: could not save the Leitner session count to " + sessionsFile);
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,11 +1,58 @@
 package com.nielsendigital;
 
+import com.diogonunes.jcolor.Attribute;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.diogonunes.jcolor.Ansi.colorize;
 
 public class Main {
 
+    public static final String CDS_TRAINING_ARG = "--cds-training";
+    public static final String CONVERT_ARG = "--convert";
+    public static final String MEMORY_REPORT_ARG = "--memory-report";
+    public static final String ARENA_BENCHMARK_ARG = "--arena-benchmark";
+    public static final String SIMULATE_ARG = "--simulate";
+    public static final String SEARCH_PAIRS_ARG = "--search-pairs";
+
     public static void main(String[] args)  {
         try {
+        if(args.length > 0 && args[0].equals(CDS_TRAINING_ARG)) {
+            trainClassDataSharing();
+            return;
+        }
+        if(args.length > 0 && args[0].equals(CONVERT_ARG)) {
+            convertWordBank(args);
+            return;
+        }
+        if(args.length > 0 && args[0].equals(MEMORY_REPORT_ARG)) {
+            MemoryReport.print(WordBankLoader.load(
+                    (args.length > 1) ? args[1] : WordBankLoader.DEFAULT_WORD_BANK));
+            return;
+        }
+        if(args.length > 0 && args[0].equals(ARENA_BENCHMARK_ARG)) {
+            TermArenaBenchmark.run((args.length > 1) ? Integer.parseInt(args[1]) : TermArenaBenchmark.DEFAULT_ROWS);
+            return;
+        }
+        if(args.length > 0 && args[0].equals(SIMULATE_ARG)) {
+            simulateQuizzes(args);
+            return;
+        }
+        if(args.length > 0 && args[0].equals(SEARCH_PAIRS_ARG)) {
+            searchLanguagePairs(args);
+            return;
+        }
+        // parse the default word bank while the main menu is drawn and the user picks an option
+        WordBankLoader.preloadInBackground(WordBankLoader.DEFAULT_WORD_BANK);
+        Metrics.configureFromSystemProperties();
         UI.run();
 
             /*
@@ -41,6 +88,86 @@ public class Main {
         }
     }
 
+    /*
+    Training run for the class data sharing archive built by the `startup` maven profile. Touches the classes a
+    normal session loads before its first prompt (loading, searching, exporting, colored output) without reading
+    from stdin or writing any files.
+     */
+    private static void trainClassDataSharing() throws Exception {
+        WordBankLoader.preloadInBackground(WordBankLoader.DEFAULT_WORD_BANK);
+        WordBank wordBank = WordBankLoader.load(WordBankLoader.DEFAULT_WORD_BANK);
+        for(WordBank.EntryHeading heading : WordBank.EntryHeading.values()) {
+            wordBank.findWordBankEntries("the", heading);
+        }
+        WordBankExporter exporter = new WordBankExporter(
+                Channels.newChannel(OutputStream.nullOutputStream()), WordBankExporter.ExportFormat.CSV);
+        exporter.writeHeader();
+        exporter.writeEntries(wordBank.getWordList());
+        exporter.flush();
+        Metrics.dump();
+        System.out.println(colorize(UI.Write.appName + ": " + wordBank.getWordListSize() +
+                " entries loaded for the class data sharing archive.", Attribute.BRIGHT_BLUE_TEXT()));
+    }
+
+    /*
+    Copies a word bank into another file, e.g., --convert german-english.csv german-english.llbt. The store for
+    each file is picked by its extension (see WordBankStore).
+     */
+    private static void convertWordBank(String[] args) throws Exception {
+        if(args.length != 3) {
+            throw new Exception("ERROR: usage is " + CONVERT_ARG + " <from word bank> <to word bank>");
+        }
+        WordBank wordBank = new WordBank(args[1]);
+        File target = new File(args[2]);
+        try (WordBankStore store = WordBankStore.forFile(target, false)) {
+            store.writeAll(wordBank.getWordList());
+        }
+        System.out.println(colorize(UI.Write.appName + ": " + wordBank.getWordListSize() + " entries copied from " +
+                args[1] + " to " + target, Attribute.BRIGHT_BLUE_TEXT()));
+    }
+
+    // --simulate [learners] [quizzes per learner] [think ms] [accuracy], against the default word bank
+    private static void simulateQuizzes(String[] args) throws Exception {
+        new QuizSimulation(WordBankLoader.getWordBankFile(WordBankLoader.DEFAULT_WORD_BANK))
+                .learners((args.length > 1) ? Integer.parseInt(args[1]) : QuizSimulation.DEFAULT_LEARNERS)
+                .quizzesPerLearner((args.length > 2) ? Integer.parseInt(args[2]) : QuizSimulation.DEFAULT_QUIZZES_PER_LEARNER)
+                .thinkTime(QuizSimulation.ThinkTime.LOG_NORMAL,
+                        (args.length > 3) ? Long.parseLong(args[3]) : QuizSimulation.DEFAULT_THINK_MILLIS)
+                .accuracy((args.length > 4) ? Double.parseDouble(args[4]) : QuizSimulation.DEFAULT_ACCURACY, 0.15)
+                .run();
+    }
+
+    /*
+    Looks a term up among the foreign and native terms of several word banks (one per language pair) at once,
+    e.g., --search-pairs "der Hund" german-english.csv spanish-english.csv; without word banks, every csv word bank
+    in the data directory.
+     */
+    private static void searchLanguagePairs(String[] args) throws Exception {
+        if(args.length < 2) {
+            throw new Exception("ERROR: usage is " + SEARCH_PAIRS_ARG + " <term> [word banks]");
+        }
+        List<String> fileNames = new ArrayList<>(Arrays.asList(args).subList(2, args.length));
+        if(fileNames.isEmpty()) {
+            File[] wordBankFiles = WordBankLoader.getDataDirectory().listFiles((dir, name) -> name.endsWith(".csv"));
+            for(File wordBankFile : (wordBankFiles == null) ? new File[0] : wordBankFiles) {
+                fileNames.add(wordBankFile.getName());
+            }
+            Collections.sort(fileNames);
+        }
+        if(fileNames.isEmpty()) {
+            throw new Exception("ERROR: there are no word banks in " + WordBankLoader.getDataDirectory());
+        }
+        ShardedWordBank wordBank = ShardedWordBank.load(fileNames, ShardedWordBank.DEFAULT_SHARDS_PER_PAIR);
+        // an entry can match by both terms
+        Set<WordBankEntry> found = new LinkedHashSet<>(wordBank.findWordBankEntries(args[1], WordBank.EntryHeading.FOREIGN_LANGUAGE));
+        found.addAll(wordBank.findWordBankEntries(args[1], WordBank.EntryHeading.NATIVE_LANGUAGE));
+        for(WordBankEntry entry : found) {
+            System.out.println(entry.getForeignLanguage() + " : " + entry.getNativeLanguage() + " (" + entry.getGrammar() + ")");
+        }
+        System.out.println(colorize(UI.Write.appName + ": " + found.size() + " of " + wordBank.getWordListSize() +
+                " entries in " + String.join(", ", fileNames) + " match " + args[1], Attribute.BRIGHT_BLUE_TEXT()));
+    }
+
     private static ArrayList<String> doTest(String testName, int colWidth, int contentWidth, boolean shouldPrintIteratively) {
         StringBuilder heading = new StringBuilder();
         StringBuilder rows = new StringBuilder();
@@ -0,0 +1,127 @@
+package com.nielsendigital;
+
+import java.lang.ref.Reference;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/*
+MemoryReport prints what a word bank costs in memory per entry next to what the same entries cost in the layout
+they had before WordBankEntry was made compact: a LinkedList node, four String fields, a Timestamp and a cached
+entry id per row. Run it with `--memory-report [word bank]`.
+
+With JOL on the class path (mvn -Pmemory package, see README) the sizes are JOL's walk of the object graphs;
+otherwise they are the heap used before and after building COPIES copies of each layout, which is close but
+depends on the collector. The grammar text is shared by both layouts and counted in both.
+ */
+public class MemoryReport {
+    private static final String JOL_GRAPH_LAYOUT = "org.openjdk.jol.info.GraphLayout";
+    private static final int COPIES = 20;
+
+    public static void print(WordBank wordBank) throws Exception {
+        List<WordBankEntry> entries = wordBank.getWordList();
+        if(entries.isEmpty()) {
+            System.out.println("ERROR: the word bank " + wordBank.getPathName() + " has no entries to measure.");
+            return;
+        }
+
+        boolean hasJol = isJolAvailable();
+        long compact = hasJol ? jolSize(entries) : heapSize(() -> copyOf(entries));
+        long previous = hasJol ? jolSize(previousLayoutOf(entries)) : heapSize(() -> previousLayoutOf(entries));
+        int count = entries.size();
+
+        System.out.println("Memory per word bank entry, " + count + " entries of " + wordBank.getPathName() +
+                " (" + (hasJol ? "measured with JOL" : "heap estimate, add JOL for exact sizes") + "):");
+        System.out.println("- compact entries : " + (compact / count) + " bytes (" + compact + " bytes in all)");
+        System.out.println("- previous layout : " + (previous / count) + " bytes (" + previous + " bytes in all)");
+        System.out.println("- saved           : " + ((previous - compact) / count) + " bytes per entry (" +
+                String.format("%.1f", 100.0 * (previous - compact) / previous) + "%)");
+    }
+
+    private static boolean isJolAvailable() {
+        try {
+            Class.forName(JOL_GRAPH_LAYOUT);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    // JOL's GraphLayout.parseInstance(root).totalSize(), called reflectively so JOL stays an optional dependency
+    private static long jolSize(Object root) throws Exception {
+        Class<?> graphLayout = Class.forName(JOL_GRAPH_LAYOUT);
+        Object layout = graphLayout.getMethod("parseInstance", Object[].class).invoke(null, (Object) new Object[]{root});
+        return (long) graphLayout.getMethod("totalSize").invoke(layout);
+    }
+
+    private static long heapSize(Supplier<Object> build) {
+        Object[] copies = new Object[COPIES];
+        long before = usedHeap();
+        for(int i = 0; i < COPIES; i++) {
+            copies[i] = build.get();
+        }
+        long after = usedHeap();
+        Reference.reachabilityFence(copies);
+        return Math.max(0, after - before) / COPIES;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static List<WordBankEntry> copyOf(List<WordBankEntry> entries) {
+        List<WordBankEntry> copy = new ArrayList<>(entries.size());
+        for(WordBankEntry wbe : entries) {
+            copy.add(new WordBankEntry(wbe.getForeignLanguage(), wbe.getNativeLanguage(), wbe.getGrammar(),
+                    wbe.getAnswer(), wbe.getLastSeenMillis(), wbe.getCountSeen(), wbe.getCountIncorrect(),
+                    wbe.isRated() ? wbe.getDifficulty() : Double.NaN, wbe.getLeitnerBox()));
+        }
+        return copy;
+    }
+
+    private static LinkedList<PreviousLayout> previousLayoutOf(List<WordBankEntry> entries) {
+        LinkedList<PreviousLayout> previous = new LinkedList<>();
+        for(WordBankEntry wbe : entries) {
+            previous.add(new PreviousLayout(wbe));
+        }
+        return previous;
+    }
+
+    // the fields a WordBankEntry had before the compact layout
+    @SuppressWarnings("unused")
+    private static final class PreviousLayout {
+        private final String foreignLanguage;
+        private final String nativeLanguage;
+        private final String grammar;
+        private final String answer;
+        private final byte answerForm;
+        private final int grammarCode;
+        private final Timestamp lastSeen;
+        private final int countSeen;
+        private final int countIncorrect;
+        private final double difficulty;
+        private final byte leitnerBox;
+        private final long entryId;
+
+        PreviousLayout(WordBankEntry wbe) {
+            this.foreignLanguage = wbe.getForeignLanguage();
+            this.nativeLanguage = wbe.getNativeLanguage();
+            this.grammar = wbe.getGrammar();
+            this.answer = wbe.isAnswerStored() ? wbe.getAnswer() : null;
+            this.answerForm = (byte) (wbe.isAnswerStored() ? 0 : 1);
+            this.grammarCode = wbe.getGrammarCode();
+            this.lastSeen = wbe.getLastSeen();
+            this.countSeen = wbe.getCountSeen();
+            this.countIncorrect = wbe.getCountIncorrect();
+            this.difficulty = wbe.getDifficulty();
+            this.leitnerBox = (byte) wbe.getLeitnerBox();
+            this.entryId = wbe.getEntryId();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+MemoryWordBankStore keeps the word bank in memory and never writes it anywhere, for benchmarks, simulations and
+servers that load a bank once. forFile() shares one store per word bank file for the life of the process, so quiz
+results carry over between the WordBanks loaded from it; the store starts from the file's own store the first
+time it is read.
+ */
+public class MemoryWordBankStore implements WordBankStore {
+    private static final ConcurrentHashMap<String, MemoryWordBankStore> STORES = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<String, WordBankEntry> entries; // by normalized foreign term, in insertion order
+    private WordBankStore seed;
+
+    public MemoryWordBankStore() {
+        this(null);
+    }
+
+    // starts from the entries in seed, read on first use
+    public MemoryWordBankStore(WordBankStore seed) {
+        this.entries = new LinkedHashMap<>();
+        this.seed = seed;
+    }
+
+    public static MemoryWordBankStore forFile(File file, WordBankStore seed) {
+        return STORES.computeIfAbsent(file.getAbsolutePath(), path -> new MemoryWordBankStore(seed));
+    }
+
+    @Override
+    public synchronized List<WordBankEntry> readAll(StringPool stringPool) throws IOException {
+        if(this.seed != null) {
+            try (WordBankStore source = this.seed) {
+                putAll(source.readAll(stringPool));
+            }
+            this.seed = null;
+        }
+        return new ArrayList<>(this.entries.values());
+    }
+
+    @Override
+    public synchronized void writeAll(Collection<WordBankEntry> entries) {
+        this.seed = null;
+        this.entries.clear();
+        putAll(entries);
+    }
+
+    @Override
+    public synchronized void append(Collection<WordBankEntry> entries) {
+        putAll(entries);
+    }
+
+    @Override
+    public boolean supportsPointUpdates() {
+        return true;
+    }
+
+    @Override
+    public synchronized void upsert(WordBankEntry entry) {
+        this.entries.put(TranslationGraph.normalize(entry.getForeignLanguage()), entry);
+    }
+
+    @Override
+    public synchronized List<WordBankEntry> scanByLastSeen(int limit) {
+        List<WordBankEntry> sorted = new ArrayList<>(this.entries.values());
+        WordBank.sortByStatistic(sorted, WordBankEntry::getLastSeenMillis);
+        return new ArrayList<>(sorted.subList(0, Math.max(0, Math.min(limit, sorted.size()))));
+    }
+
+    @Override
+    public synchronized List<WordBankEntry> scanByCountIncorrect(int minCountIncorrect) {
+        List<WordBankEntry> result = new ArrayList<>();
+        for(WordBankEntry entry : this.entries.values()) {
+            if(entry.getCountIncorrect() >= minCountIncorrect) {
+                result.add(entry);
+            }
+        }
+        WordBank.sortByStatistic(result, WordBankEntry::getCountIncorrect);
+        return result;
+    }
+
+    private void putAll(Collection<WordBankEntry> entries) {
+        for(WordBankEntry entry : entries) {
+            upsert(entry);
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.nielsendigital;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import javax.management.ObjectName;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Metrics is a small process wide registry of counters, timers and histograms for the load, search, quiz and save
+paths. Recording is lock free (LongAdder and atomic power-of-two buckets), so it is cheap enough to leave on.
+
+The registry can be read:
+    - over JMX as com.nielsendigital:type=Metrics with -Dlanguagelearner.metrics.jmx=true (see registerMXBean())
+    - as a periodic text dump, e.g., -Dlanguagelearner.metrics.dumpSeconds=60
+      [-Dlanguagelearner.metrics.dumpFile=metrics.log], otherwise to stderr
+    - through the JFR events below (WordBank Load/Search/Save) in any flight recording
+ */
+public class Metrics {
+    public static final String OBJECT_NAME = "com.nielsendigital:type=Metrics";
+    public static final String JMX_PROPERTY = "languagelearner.metrics.jmx";
+    public static final String DUMP_SECONDS_PROPERTY = "languagelearner.metrics.dumpSeconds";
+    public static final String DUMP_FILE_PROPERTY = "languagelearner.metrics.dumpFile";
+
+    private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService dumpExecutor;
+
+    public static Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public static Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new Histogram());
+    }
+
+    public static Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    /*
+    Starts the JMX bean and the periodic dump as configured by system properties. Neither is on by default, since
+    registering the bean starts the platform MBean server, which every run would otherwise pay for at startup.
+     */
+    public static void configureFromSystemProperties() {
+        if(Boolean.getBoolean(JMX_PROPERTY)) {
+            registerMXBean();
+        }
+        String dumpSeconds = System.getProperty(DUMP_SECONDS_PROPERTY);
+        if(dumpSeconds != null && !dumpSeconds.isBlank()) {
+            try {
+                startPeriodicDump(Long.parseLong(dumpSeconds.trim()), System.getProperty(DUMP_FILE_PROPERTY));
+            } catch (NumberFormatException e) {
+                System.out.println("ERROR: " + DUMP_SECONDS_PROPERTY + " must be a whole number of seconds.");
+            }
+        }
+    }
+
+    public static boolean registerMXBean() {
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if(!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), objectName);
+            }
+            return true;
+        } catch (Exception e) {
+            System.out.println("ERROR: could not register the metrics MXBean " + OBJECT_NAME);
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    public static synchronized void startPeriodicDump(long periodSeconds, String dumpFile) {
+        if(dumpExecutor != null || periodSeconds < 1) {
+            return;
+        }
+        PrintStream out = System.err;
+        if(dumpFile != null && !dumpFile.isBlank()) {
+            try {
+                out = new PrintStream(new FileOutputStream(dumpFile, true), true, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.out.println("ERROR: could not open the metrics dump file " + dumpFile + ", using stderr.");
+            }
+        }
+        PrintStream target = out;
+        dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumpExecutor.scheduleAtFixedRate(() -> target.print(dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("---------------------- Metrics ").append(LocalDateTime.now()).append(" ----------------------\n");
+        new TreeMap<>(counters).forEach((name, counter) ->
+                sb.append(name).append(" count=").append(counter.get()).append("\n"));
+        new TreeMap<>(timers).forEach((name, timer) ->
+                sb.append(name).append(" ").append(timer.summary()).append("\n"));
+        new TreeMap<>(histograms).forEach((name, histogram) ->
+                sb.append(name).append(" ").append(histogram.summary()).append("\n"));
+        return sb.toString();
+    }
+
+    public static class Counter {
+        private final LongAdder count = new LongAdder();
+
+        public void increment() {
+            this.count.increment();
+        }
+
+        public void add(long amount) {
+            this.count.add(amount);
+        }
+
+        public long get() {
+            return this.count.sum();
+        }
+    }
+
+    /*
+    Counts values into 64 power-of-two buckets (bucket i holds values in [2^(i-1), 2^i)), so percentiles are
+    accurate to a factor of 2 which is plenty to spot a regression.
+     */
+    public static class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+        public void record(long value) {
+            long v = Math.max(0, value);
+            this.buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(v));
+            this.count.increment();
+            this.sum.add(v);
+            this.max.accumulate(v);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getMax() {
+            return this.max.get();
+        }
+
+        public double getMean() {
+            long n = getCount();
+            return (n == 0) ? 0 : (double) this.sum.sum() / n;
+        }
+
+        // upper bound of the bucket holding the percentile
+        public long getPercentile(double percentile) {
+            long n = getCount();
+            if(n == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil((percentile / 100.0) * n));
+            long seen = 0;
+            for(int i = 0; i < 64; i++) {
+                seen += this.buckets.get(i);
+                if(seen >= rank) {
+                    return (i == 0) ? 0 : Math.min((1L << i) - 1, getMax());
+                }
+            }
+            return getMax();
+        }
+
+        public String summary() {
+            return "count=" + getCount() +
+                    " mean=" + String.format("%.1f", getMean()) +
+                    " p50=" + getPercentile(50) +
+                    " p99=" + getPercentile(99) +
+                    " max=" + getMax();
+        }
+    }
+
+    public static class Timer {
+        private final Histogram nanos = new Histogram();
+
+        public long start() {
+            return System.nanoTime();
+        }
+
+        // records the time since a start() and returns it in nanoseconds
+        public long stop(long startNanos) {
+            long elapsed = System.nanoTime() - startNanos;
+            this.nanos.record(elapsed);
+            return elapsed;
+        }
+
+        public void recordNanos(long elapsedNanos) {
+            this.nanos.record(elapsedNanos);
+        }
+
+        public Histogram getNanos() {
+            return nanos;
+        }
+
+        public String summary() {
+            return "count=" + this.nanos.getCount() +
+                    " mean=" + String.format("%.3f", this.nanos.getMean() / 1_000_000.0) + "ms" +
+                    " p50=" + String.format("%.3f", this.nanos.getPercentile(50) / 1_000_000.0) + "ms" +
+                    " p99=" + String.format("%.3f", this.nanos.getPercentile(99) / 1_000_000.0) + "ms" +
+                    " max=" + String.format("%.3f", this.nanos.getMax() / 1_000_000.0) + "ms";
+        }
+    }
+
+    public interface MetricsMXBean {
+        Map<String, Long> getCounters();
+
+        Map<String, Long> getTimerCounts();
+
+        Map<String, Long> getTimerP99Nanos();
+
+        Map<String, Long> getHistogramP99();
+
+        String getDump();
+    }
+
+    public static class MetricsBean implements MetricsMXBean {
+        @Override
+        public Map<String, Long> getCounters() {
+            Map<String, Long> result = new TreeMap<>();
+            counters.forEach((name, counter) -> result.put(name, counter.get()));
+            return result;
+        }
+
+        @Override
+        public Map<String, Long> getTimerCounts() {
+            Map<String, Long> result = new TreeMap<>();
+            timers.forEach((name, timer) -> result.put(name, timer.getNanos().getCount()));
+            return result;
+        }
+
+        @Override
+        public Map<String, Long> getTimerP99Nanos() {
+            Map<String, Long> result = new TreeMap<>();
+            timers.forEach((name, timer) -> result.put(name, timer.getNanos().getPercentile(99)));
+            return result;
+        }
+
+        @Override
+        public Map<String, Long> getHistogramP99() {
+            Map<String, Long> result = new TreeMap<>();
+            histograms.forEach((name, histogram) -> result.put(name, histogram.getPercentile(99)));
+            return result;
+        }
+
+        @Override
+        public String getDump() {
+            return dump();
+        }
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ JFR events ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    @Name("com.nielsendigital.WordBankLoad")
+    @Label("WordBank Load")
+    @Category({"Language Learner", "WordBank"})
+    @Description("Reading a word bank file into memory")
+    public static class LoadEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Entries")
+        public int entries;
+    }
+
+    @Name("com.nielsendigital.WordBankSearch")
+    @Label("WordBank Search")
+    @Category({"Language Learner", "WordBank"})
+    @Description("Searching a word bank")
+    public static class SearchEvent extends Event {
+        @Label("Heading")
+        public String heading;
+
+        @Label("Term")
+        public String term;
+
+        @Label("Results")
+        public int results;
+    }
+
+    @Name("com.nielsendigital.WordBankSave")
+    @Label("WordBank Save")
+    @Category({"Language Learner", "WordBank"})
+    @Description("Writing a word bank file to disk")
+    public static class SaveEvent extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Entries")
+        public int entries;
+    }
+}
@@ -0,0 +1,133 @@
+package com.nielsendigital;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/*
+QueryCache keeps the results of a word bank's recent searches and quiz candidate pools (least recently seen, most
+incorrect), least recently used first out, so a query asked again in the same session isn't rescanned.
+
+Each result is stamped with the WordBank version it was computed at and is only returned at that version. It also
+carries the rows it depends on as a predicate, so changes drop just the results they touch:
+- entriesAdded(): a new row the predicate accepts (it would be in the result) drops the result, the others are
+  restamped with the new version and stay
+- entriesReplaced(): the same for rows taken out of the word list (a result they were in is dropped) and the rows
+  put in their place, e.g., an entry swapped for a copy or the word list set anew
+- statisticsChanged(): graded rows drop the results that depend on statistics and that the predicate accepts the
+  rows for; text searches never do, the terms of an entry don't change
+A result computed at an older version than the one a change starts from is dropped by the change.
+
+Results are kept as unmodifiable lists of the entries themselves; results over MAX_RESULT_SIZE entries aren't kept.
+ */
+public class QueryCache {
+    public static final int DEFAULT_CAPACITY = 64;
+    private static final int MAX_RESULT_SIZE = 10_000;
+    private static final Metrics.Counter HITS = Metrics.counter("wordbank.cache.hits");
+    private static final Metrics.Counter MISSES = Metrics.counter("wordbank.cache.misses");
+    private static final Metrics.Counter INVALIDATIONS = Metrics.counter("wordbank.cache.invalidations");
+
+    private final LinkedHashMap<String, Cached> results;
+
+    public QueryCache(int capacity) {
+        this.results = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public QueryCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // the result cached for the query at this version, or null
+    public synchronized List<WordBankEntry> get(String query, long version) {
+        Cached cached = this.results.get(query);
+        if(cached == null || cached.version != version) {
+            MISSES.increment();
+            return null;
+        }
+        HITS.increment();
+        return cached.result;
+    }
+
+    /*
+    Caches a result computed at version. affectedBy accepts a row that, added or (with dependsOnStatistics) graded,
+    could change the result.
+     */
+    public synchronized void put(String query, long version, List<WordBankEntry> result, boolean dependsOnStatistics,
+                                 Predicate<WordBankEntry> affectedBy) {
+        if(result.size() > MAX_RESULT_SIZE) {
+            return;
+        }
+        this.results.put(query, new Cached(version, List.copyOf(result), dependsOnStatistics, affectedBy));
+    }
+
+    // rows were added, taking the word bank from fromVersion to toVersion
+    public void entriesAdded(Collection<WordBankEntry> added, long fromVersion, long toVersion) {
+        entriesReplaced(List.of(), added, fromVersion, toVersion);
+    }
+
+    // rows were taken out of the word bank and others put in, taking it from fromVersion to toVersion
+    public synchronized void entriesReplaced(Collection<WordBankEntry> removed, Collection<WordBankEntry> added,
+                                             long fromVersion, long toVersion) {
+        Iterator<Cached> iterator = this.results.values().iterator();
+        while(iterator.hasNext()) {
+            Cached cached = iterator.next();
+            if(cached.version != fromVersion || isAffected(cached, removed) || isAffected(cached, added)) {
+                iterator.remove();
+                INVALIDATIONS.increment();
+            } else {
+                cached.version = toVersion;
+            }
+        }
+    }
+
+    // the rows' statistics (last seen, counts) changed, e.g., a quiz graded them
+    public synchronized void statisticsChanged(Collection<WordBankEntry> changed) {
+        Iterator<Cached> iterator = this.results.values().iterator();
+        while(iterator.hasNext()) {
+            Cached cached = iterator.next();
+            if(cached.dependsOnStatistics && isAffected(cached, changed)) {
+                iterator.remove();
+                INVALIDATIONS.increment();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        this.results.clear();
+    }
+
+    public synchronized int size() {
+        return this.results.size();
+    }
+
+    private static boolean isAffected(Cached cached, Collection<WordBankEntry> rows) {
+        for(WordBankEntry row : rows) {
+            if(cached.affectedBy.test(row)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Cached {
+        long version;
+        final List<WordBankEntry> result;
+        final boolean dependsOnStatistics;
+        final Predicate<WordBankEntry> affectedBy;
+
+        Cached(long version, List<WordBankEntry> result, boolean dependsOnStatistics, Predicate<WordBankEntry> affectedBy) {
+            this.version = version;
+            this.result = result;
+            this.dependsOnStatistics = dependsOnStatistics;
+            this.affectedBy = affectedBy;
+        }
+    }
+}
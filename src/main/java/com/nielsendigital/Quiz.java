@@ -1,33 +1,48 @@
 package com.nielsendigital;
 
-import java.sql.Timestamp;
-import java.time.Duration;
-import java.time.LocalDateTime;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Should take a subset of the WordBank and test on that. User should be given feedback on whether their answer was
  * correct or not and the correct answer should be shown in either case.
  */
 public class Quiz {
+    private static final Metrics.Timer SELECT_TIMER = Metrics.timer("quiz.select");
+    private static final Metrics.Counter ANSWERS = Metrics.counter("quiz.answers");
+    private static final Metrics.Counter INCORRECT_ANSWERS = Metrics.counter("quiz.answers.incorrect");
+    private static final Random random = new Random(); // shared by word selection and RANDOM directions
+    private static final int PREFETCH_DEPTH = 3; // prompts prepared ahead of the one being answered
     private final int numWordsToTest;
     private final QuizType quizType;
     private final WordBank testBank;
     private final String wordBankPath;
     private final QuizDirection testDirection;
-
-    public Quiz(int numWordsToTest, QuizType quizType, WordBank testBank, QuizDirection testDirection) throws Exception {
-        this.wordBankPath = "german-english.csv";
+    private final QuizFilter filter;
+    private final AnswerSource answers;
+    private LeitnerBoxes leitnerBoxes; // the boxes and session a LEITNER quiz drew its cards from
+    private long leitnerSession;
+
+    public Quiz(int numWordsToTest, QuizType quizType, WordBank testBank, QuizDirection testDirection,
+                QuizFilter filter, AnswerSource answers) throws Exception {
+        this.answers = answers;
+        this.wordBankPath = WordBankLoader.DEFAULT_WORD_BANK;
         this.numWordsToTest = numWordsToTest;
         this.quizType = quizType;
         this.testDirection = testDirection;
+        this.filter = (filter == null) ? new QuizFilter() : filter;
         if(testBank == null) {
             this.testBank = this.loadWords();
         } else {
             this.testBank = testBank;
         }
 
-        if(numWordsToTest > this.testBank.getWordList().size()) {
+        // an adaptive quiz may come back to a word, so numWordsToTest is only its upper limit
+        if(quizType != QuizType.ADAPTIVE && numWordsToTest > this.testBank.getWordList().size()) {
             System.out.println("ERROR: more words requested than in Word Bank:" +
                     "\n- words requested: " + this.numWordsToTest +
                     "\n- word bank words: " + this.testBank.getWordList().size()
@@ -37,6 +52,15 @@ public class Quiz {
         this.run();
     }
 
+    public Quiz(int numWordsToTest, QuizType quizType, WordBank testBank, QuizDirection testDirection,
+                QuizFilter filter) throws Exception {
+        this(numWordsToTest, quizType, testBank, testDirection, filter, AnswerSource.CONSOLE);
+    }
+
+    public Quiz(int numWordsToTest, QuizType quizType, WordBank testBank, QuizDirection testDirection) throws Exception {
+        this(numWordsToTest, quizType, testBank, testDirection, null);
+    }
+
     public Quiz(int numWordsToTest, WordBank testBank) throws Exception {
         this( numWordsToTest,
                 QuizType.RANDOM, // default to random type
@@ -76,16 +100,31 @@ public class Quiz {
         );
     }
 
+    public Quiz(int numWords, QuizFilter filter, QuizDirection testDirection) throws Exception {
+        this(numWords,
+                QuizType.FILTERED,
+                null, // will use default word bank
+                testDirection,
+                filter
+        );
+    }
+
     private WordBank loadWords(boolean shouldPrintDetails) throws Exception {
-        return new WordBank(this.wordBankPath, shouldPrintDetails);
+        return new WordBank(WordBankLoader.getWordBankFile(this.wordBankPath).getPath(), shouldPrintDetails);
     }
 
+    // picks up the default word bank if it was preloaded while the menu was showing
     private WordBank loadWords() throws Exception {
-        return new WordBank(this.wordBankPath);
+        return WordBankLoader.load(this.wordBankPath);
     }
 
     private void run() throws Exception {
         this.printQuizInfo();
+        if(this.quizType == QuizType.ADAPTIVE) {
+            this.runAdaptive();
+            return;
+        }
+        long selectStart = SELECT_TIMER.start();
         List<WordBankEntry> currentTestList;
         switch(this.quizType) {
             case MOST_INCORRECT:
@@ -103,55 +142,160 @@ public class Quiz {
                     return;
                 }
                 break;
+            case SLOW_BUT_CORRECT:
+                currentTestList = getSlowButCorrectWordList();
+                // restart building the word test if there was a problem.
+                if(currentTestList == null) {
+                    return;
+                }
+                break;
+            case NEAR_SKILL:
+                currentTestList = getNearSkillWordList();
+                // restart building the word test if there was a problem.
+                if(currentTestList == null) {
+                    return;
+                }
+                break;
+            case LEITNER:
+                currentTestList = getLeitnerWordList();
+                // restart building the word test if there was a problem.
+                if(currentTestList == null) {
+                    return;
+                }
+                break;
+            case FILTERED:
+                currentTestList = getFilteredWordList();
+                // restart building the word test if there was a problem.
+                if(currentTestList == null) {
+                    return;
+                }
+                break;
             case RANDOM :
             default:
                 currentTestList = getRandomWordList();
                 break;
         }
-
-        gradeQuiz(startWordQuiz(currentTestList));
+        SELECT_TIMER.stop(selectStart);
+
+        try {
+            gradeQuiz(startWordQuiz(currentTestList));
+        } finally {
+            if(this.leitnerBoxes != null) {
+                // the cards an aborted quiz didn't get to go back to their boxes
+                this.leitnerBoxes.putBack(currentTestList);
+            }
+        }
+        if(this.leitnerBoxes != null) {
+            LeitnerBoxes.completeSession(QuizEventLog.directoryFor(this.testBank.getWordBankFile()), this.leitnerSession);
+        }
 
         printCurrentQuizList(currentTestList);
     }
 
     private List<WordBankEntry> getLeastRecentlySeenWordList() throws Exception{
-        List<WordBankEntry> wordList = this.testBank.getWordList();
-        List<WordBankEntry> quizList = new LinkedList<WordBankEntry>();
+        List<WordBankEntry> quizList = this.testBank.findLeastRecentlySeen(this.numWordsToTest);
 
-        // sort list by least recently seen descending
-        wordList.sort(new Comparator<WordBankEntry>() {
-            @Override
-            public int compare(WordBankEntry o1, WordBankEntry o2) {
-                return o1.getLastSeen().compareTo(o2.getLastSeen());
-            }
-        });
+        if( !this.areThereEnoughWords(quizList.size()) ) {
+            return null;
+        }
+
+        Collections.shuffle(quizList);
+        return quizList;
+    }
 
+    private List<WordBankEntry> getMostIncorrectWordList() throws Exception{
         // fetch all the entries that have been answered incorrectly at least 1x
-        for (int i = 0; i < this.numWordsToTest; i++) {
-            quizList.add(wordList.get(i));
-        }
+        List<WordBankEntry> quizList = this.testBank.findIncorrectEntries(1);
 
         if( !this.areThereEnoughWords(quizList.size()) ) {
             return null;
         }
+        return getRandomWordList(quizList);
+    }
+
+    /*
+    Entries the learner gets right but only after hesitating, i.e., the highest median latency of correct answers.
+    Keeps the slowest numWordsToTest in a min-heap so the bank is walked once; each entry's median is read once,
+    before it goes into the heap.
+     */
+    private List<WordBankEntry> getSlowButCorrectWordList() {
+        LatencyStats latencyStats = this.testBank.getLatencyStats();
+        List<WordBankEntry> wordList = this.testBank.getWordList();
+        long[] medianMillis = new long[wordList.size()];
+        PriorityQueue<Integer> slowest = new PriorityQueue<>(Comparator.comparingLong((Integer i) -> medianMillis[i]));
+        int available = 0;
+
+        for(int i = 0; i < medianMillis.length; i++) {
+            medianMillis[i] = latencyStats.getMedianMillis(wordList.get(i));
+            if(medianMillis[i] < 0) {
+                continue;
+            }
+            available++;
+            slowest.add(i);
+            if(slowest.size() > this.numWordsToTest) {
+                slowest.poll();
+            }
+        }
+
+        if( !this.areThereEnoughWords(available,
+                "not enough words have been answered correctly yet to find the slowest ones!") ) {
+            return null;
+        }
 
+        List<WordBankEntry> quizList = new LinkedList<WordBankEntry>();
+        for(int i : slowest) {
+            quizList.add(wordList.get(i));
+        }
         Collections.shuffle(quizList);
         return quizList;
     }
 
-    private List<WordBankEntry> getMostIncorrectWordList() throws Exception{
-        List<WordBankEntry> quizList = new LinkedList<WordBankEntry>();
+    // the next cards from the Leitner boxes due this session, box 0 first; may be fewer than asked for
+    private List<WordBankEntry> getLeitnerWordList() {
+        LeitnerBoxes boxes = this.testBank.getLeitnerBoxes();
+        long session = boxes.firstDueSession(
+                LeitnerBoxes.currentSession(QuizEventLog.directoryFor(this.testBank.getWordBankFile())));
+        if(session < 0) {
+            System.out.println("ERROR: there are no words in the Leitner boxes.");
+            return null;
+        }
+        List<WordBankEntry> quizList = new LinkedList<WordBankEntry>(boxes.draw(this.numWordsToTest, session));
 
-        // fetch all the entries that have been answered incorrectly at least 1x
-        for (WordBankEntry wbe : this.testBank.getWordList()) {
-            if (wbe.getCountIncorrect() > 0) {
-                quizList.add(wbe);
-            }
+        if(quizList.isEmpty()) {
+            // e.g., another quiz drew them meanwhile
+            System.out.println("ERROR: no Leitner box is due for review in session " + session + ", try again later.");
+            return null;
+        }
+        this.leitnerBoxes = boxes;
+        this.leitnerSession = session;
+        if(quizList.size() < this.numWordsToTest) {
+            System.out.println("Only " + quizList.size() + " word(s) are due for review in this session.\n");
         }
+        return quizList;
+    }
+
+    // the entries whose Elo difficulty is closest to the learner's skill, found from the sorted difficulty index
+    private List<WordBankEntry> getNearSkillWordList() {
+        double skill = this.testBank.getSkillRatings().getLearnerRating();
+        List<WordBankEntry> quizList = new LinkedList<WordBankEntry>(
+                this.testBank.getDifficultyIndex().nearest(skill, this.numWordsToTest));
 
         if( !this.areThereEnoughWords(quizList.size()) ) {
             return null;
         }
+        System.out.println("Choosing words near your skill rating of " + Math.round(skill) + ".\n");
+        Collections.shuffle(quizList);
+        return quizList;
+    }
+
+    // random picks among the entries matching every facet of the filter, resolved from the word bank's bitmaps
+    private List<WordBankEntry> getFilteredWordList() throws Exception {
+        List<WordBankEntry> quizList = this.filter.resolveEntries(this.testBank.getFacetIndex());
+
+        if( !this.areThereEnoughWords(quizList.size(),
+                "not enough words match the filter (" + this.filter.describe() + ")!") ) {
+            return null;
+        }
         return getRandomWordList(quizList);
     }
 
@@ -160,7 +304,6 @@ public class Quiz {
             throw new FatalQuizException("ERROR: there are no values in the word list.");
         }
         List<WordBankEntry> currentTestList = new LinkedList<WordBankEntry>();
-        Random random = new Random();
 
         for(int i = 0; i < this.numWordsToTest; i++ ) {
             currentTestList.add( wordlist.get( random.nextInt(0, wordlist.size()) ) );
@@ -197,12 +340,16 @@ public class Quiz {
         int failureCount = 0;
         int numCorrect = 0;
         double score;
+        List<WordBankEntry> gradedEntries = new ArrayList<>(results.size());
 
         // tabulate score and update the testBank so that it can be saved to file.
         for(QuizEvaluationResult result : results) {
             count++;
+            ANSWERS.increment();
             if(result.isCorrect) {
                 numCorrect++;
+            } else {
+                INCORRECT_ANSWERS.increment();
             }
             String grammar = "Successfully updated";
             /*
@@ -212,18 +359,22 @@ public class Quiz {
             if(!this.updateQuizBankEntry(result.getEntry())) {
                 failureCount++;
                 grammar = "FAILED to update";
+            } else {
+                gradedEntries.add(result.getEntry());
             }
             if(this.testBank.isShouldPrintDetails() || (failureCount > 0)) {
                 System.out.println(grammar + " " + result.wordTested + " : " + result.answerExpected + " pair in the word bank.");
             }
         }
 
+        this.flushQuizEvents();
+
         if(this.testBank.isShouldPrintDetails()) {
             System.out.println("Writing entries to csv");
         }
 
-        // eventually may return true/false depending on how the PrintWriter works
-        this.testBank.writeEntriesToFile();
+        // only the graded entries changed; a store with point updates writes just those
+        this.testBank.saveEntries(gradedEntries);
 
         System.out.println("\n" + UI.Draw.hr_squiggle);
         System.out.println("\n                      Congratulations!");
@@ -232,35 +383,137 @@ public class Quiz {
         System.out.println("You scored " + String.format("%.2f", score) + "%");
     }
 
+    /*
+    Runs on the background thread right after each answer so the next prompt doesn't wait for it: the answer is
+    rated, appended to the word bank's event log for later analysis and a correct answer's latency is recorded.
+     */
+    private void persistResult(QuizEvaluationResult result) {
+        this.testBank.recordRating(result.getEntry(), result.isCorrect());
+        if(this.quizType == QuizType.LEITNER) {
+            this.testBank.getLeitnerBoxes().answer(result.getEntry(), result.isCorrect());
+        }
+        if(result.isCorrect()) {
+            this.testBank.getLatencyStats().recordCorrectAnswer(result.getEntry(), result.getResponseNanos());
+        }
+        QuizEventLog eventLog = this.testBank.getEventLog();
+        try {
+            eventLog.append(result.getAnsweredAt(),
+                    result.getEntry().getEntryId(),
+                    result.getDirection(),
+                    result.getAnswerGiven(),
+                    result.isCorrect(),
+                    result.getResponseNanos());
+        } catch (IOException e) {
+            System.out.println("ERROR: could not write the quiz result to the event log at " + eventLog.getDirectory());
+            e.printStackTrace();
+        }
+    }
+
+    private void flushQuizEvents() {
+        QuizEventLog eventLog = this.testBank.getEventLog();
+        try {
+            eventLog.flush();
+        } catch (IOException e) {
+            System.out.println("ERROR: could not write the quiz results to the event log at " + eventLog.getDirectory());
+            e.printStackTrace();
+        }
+    }
+
     private boolean updateQuizBankEntry(WordBankEntry entry) {
-        LinkedList<WordBankEntry> testList = this.testBank.getWordList();
-        boolean wasSuccess = false;
-        int i = 0;
         // this seems like an expensive way to do this, searching the entire wordbank for each entry to be updated.
-        for(WordBankEntry wbe : testList) {
-            if( Objects.equals(wbe.getForeignLanguage(), entry.getForeignLanguage()) &&
-                    Objects.equals(wbe.getNativeLanguage(), entry.getNativeLanguage())
-            ) {
-                testList.set(i, entry);
-                wasSuccess = true;
-                break;
+        for(WordBankEntry wbe : this.testBank.getWordList()) {
+            // usually the very same entry, which saves decoding the terms of every entry before it
+            if(wbe == entry) {
+                return true;
+            }
+            if(Objects.equals(wbe.getForeignLanguage(), entry.getForeignLanguage()) &&
+                    Objects.equals(wbe.getNativeLanguage(), entry.getNativeLanguage())) {
+                // the word list is read only; the bank publishes a new snapshot with the entry swapped in
+                return this.testBank.replaceEntry(wbe, entry);
             }
-            i++;
         }
-        return wasSuccess;
+        return false;
     }
 
-    private List<QuizEvaluationResult> startWordQuiz(List<WordBankEntry> wordlist ) {
+    /*
+    Asks each word in turn. A background thread prepares the next PREFETCH_DEPTH prompts (direction, accepted
+    answers, history lines) while the current one is being answered, then persists each result after it's given,
+    so the next card is printed as soon as an answer is entered.
+     */
+    private List<QuizEvaluationResult> startWordQuiz(List<WordBankEntry> wordlist ) throws Exception {
         List<QuizEvaluationResult> results = new LinkedList<QuizEvaluationResult>();
         System.out.println("---------------------- Start Test ---------------------");
 
-        for(WordBankEntry entry : wordlist) {
-            results.add(new QuizEvaluationResult(entry, this.testDirection));
+        TranslationGraph translations = this.testBank.getTranslationGraph();
+        Iterator<WordBankEntry> toPrepare = wordlist.iterator();
+        ArrayDeque<Future<QuizEvaluationResult>> prepared = new ArrayDeque<>();
+        ExecutorService background = newBackgroundExecutor();
+
+        try {
+            while(toPrepare.hasNext() || !prepared.isEmpty()) {
+                while(toPrepare.hasNext() && prepared.size() < PREFETCH_DEPTH) {
+                    WordBankEntry entry = toPrepare.next();
+                    prepared.add(background.submit(() -> new QuizEvaluationResult(entry, this.testDirection, translations)));
+                }
+                QuizEvaluationResult result = prepared.poll().get();
+                result.evaluate();
+                results.add(result);
+                background.submit(() -> persistResult(result));
+            }
+        } finally {
+            background.shutdown();
+            background.awaitTermination(1, TimeUnit.MINUTES);
         }
 
          return results;
     }
 
+    /*
+    Each card is chosen after the previous answer is in, so the only work left for the background thread is
+    persisting results. Stops when the AdaptiveSession is confident of the learner's level.
+     */
+    private void runAdaptive() throws Exception {
+        WordBankEntry[] entries = this.testBank.getEntrySnapshot();
+        if(entries.length == 0) {
+            throw new FatalQuizException("ERROR: there are no values in the word list.");
+        }
+        AdaptiveSession session = new AdaptiveSession(entries, this.numWordsToTest, random);
+        TranslationGraph translations = this.testBank.getTranslationGraph();
+        List<QuizEvaluationResult> results = new LinkedList<QuizEvaluationResult>();
+        List<WordBankEntry> quizzed = new LinkedList<WordBankEntry>();
+        System.out.println("---------------------- Start Test ---------------------");
+
+        ExecutorService background = newBackgroundExecutor();
+        try {
+            int ordinal;
+            while((ordinal = session.next()) >= 0) {
+                QuizEvaluationResult result = new QuizEvaluationResult(session.getEntry(ordinal), this.testDirection, translations);
+                result.evaluate();
+                session.record(ordinal, result.isCorrect());
+                results.add(result);
+                quizzed.add(result.getEntry());
+                background.submit(() -> persistResult(result));
+            }
+        } finally {
+            background.shutdown();
+            background.awaitTermination(1, TimeUnit.MINUTES);
+        }
+
+        System.out.println("Estimated mastery after " + session.getPrompts() + " words: " +
+                String.format("%.0f%% (+/- %.0f%%)", session.getMastery() * 100, session.getConfidenceHalfWidth() * 100));
+        gradeQuiz(results);
+        printCurrentQuizList(quizzed);
+    }
+
+    // one thread, so preparing prompts and persisting results never run concurrently with each other
+    private static ExecutorService newBackgroundExecutor() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "quiz-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
     private void printTestOfflineMessage() {
         System.out.println("Currently, '" + this.quizType.getQuizType() + "' testing type is offline. " +
                 "A '" + QuizType.RANDOM.getQuizType() + "' test of " +
@@ -272,76 +525,105 @@ public class Quiz {
         System.out.println("---------------------- Quizzed Word List ---------------------");
 
         int i = 0;
+        long now = System.currentTimeMillis();
         for(WordBankEntry wbe : wordlist) {
             i++;
             System.out.println(i + ": " + wbe.getForeignLanguage() + " : " + wbe.getNativeLanguage() +
                     "\n\t(numSeen: " + wbe.getCountSeen() +
                         " numIncorrect: " + wbe.getCountIncorrect() +
-                        " lastSeen: " + timeToRelativeTime(wbe.getLastSeen()) + ")");
+                        " lastSeen: " + RelativeTime.format(wbe.getLastSeenMillis(), now) + ")");
         }
         System.out.println("--------------------------------------------------------------\n\n");
 
     }
 
-    private String timeToRelativeTime(Timestamp ts) {
-
-        Duration duration = Duration.between(ts.toLocalDateTime(), LocalDateTime.now());
-
-        return String.format("%d days, %d hours ago",
-                duration.toDaysPart(), duration.toHoursPart());
-    }
-
     private void printQuizInfo() {
         System.out.println();
         System.out.println("---------------------- Test Info ----------------------");
         System.out.println("type: \t\t\t" + this.quizType.getQuizType() +
                 "\ndirection: \t\t" + this.testDirection.getDirectionType() +
-                "\nword count: \t" + this.numWordsToTest + " out of " + this.testBank.getWordList().size() +
+                "\nword count: \t" + ((this.quizType == QuizType.ADAPTIVE) ? "up to " : "") +
+                this.numWordsToTest + " out of " + this.testBank.getWordList().size() +
                 "\nword bank: \t\t" + this.testBank.getPathName());
+        if(this.quizType == QuizType.FILTERED) {
+            System.out.println("filter: \t\t" + this.filter.describe());
+        }
         System.out.println("-------------------------------------------------------\n");
     }
 
     private class QuizEvaluationResult {
-        private Scanner scanner;
         private final WordBankEntry entry;
         private final String wordTested;
+        private final QuizDirection direction;
         private String answerGiven;
         private String answerExpected;
+        private final TranslationGraph translations;
+        private final String[] answersAccepted; // answerExpected and any synonyms, for display
         private boolean isCorrect;
+        private long answeredAt;
+        private long responseNanos;
+        private String prompt;
+        private int countSeenWhenPrepared;
 
-        public QuizEvaluationResult(WordBankEntry entry, QuizDirection testDirection) {
-            this.scanner = new Scanner(System.in);
+        public QuizEvaluationResult(WordBankEntry entry, QuizDirection testDirection, TranslationGraph translations) {
             switch (testDirection) {
                 case RANDOM:
-                    Random rand = new Random();
-                    int zeroOrOne = rand.nextInt(0,2);
-                    if( zeroOrOne == 1) {
+                    if(random.nextBoolean()) {
                         this.wordTested = entry.getNativeLanguage();
                         this.answerExpected = entry.getForeignLanguage();
+                        this.direction = QuizDirection.NATIVE_TO_FOREIGN;
                     } else {
                         this.wordTested = entry.getForeignLanguage();
                         this.answerExpected = entry.getNativeLanguage();
+                        this.direction = QuizDirection.FOREIGN_TO_NATIVE;
                     }
                     break;
 
                 case NATIVE_TO_FOREIGN:
                     this.wordTested = entry.getNativeLanguage();
                     this.answerExpected = entry.getForeignLanguage();
+                    this.direction = QuizDirection.NATIVE_TO_FOREIGN;
                     break;
 
                 case FOREIGN_TO_NATIVE:
                 default:
                     this.wordTested = entry.getForeignLanguage();
                     this.answerExpected = entry.getNativeLanguage();
+                    this.direction = QuizDirection.FOREIGN_TO_NATIVE;
                     break;
             }
 
+            // any term linked to the one shown is a correct answer, e.g., both "du" and "ihr" for "you"
+            this.translations = translations;
+            this.answersAccepted = (this.direction == QuizDirection.NATIVE_TO_FOREIGN)
+                    ? translations.getForeignTerms(this.wordTested)
+                    : translations.getNativeTerms(this.wordTested);
             this.entry = entry;
             this.answerGiven = "";
             this.isCorrect = false;
+            // captured first, so an answer graded while the prompt is built still makes evaluate() rebuild it
+            this.countSeenWhenPrepared = entry.getCountSeen();
+            this.prompt = buildPrompt();
+        }
 
-            this.evaluate();
-
+        // the word to translate and what the learner's history with it looks like
+        private String buildPrompt() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(this.wordTested).append(" (").append(this.entry.getGrammar()).append(") : ");
+            if(this.entry.getCountSeen() > 0) {
+                sb.append("\n- you've seen this word ").append(this.entry.getCountSeen()).append(" times");
+                sb.append("\n- you have ").append((this.entry.getCountIncorrect() == 0) ? "not missed this word before." : "missed this word " + this.entry.getCountIncorrect() + " time(s).");
+                sb.append("\n- last seen ").append(RelativeTime.format(this.entry.getLastSeenMillis()));
+                long medianMillis = testBank.getLatencyStats().getMedianMillis(this.entry);
+                if(medianMillis >= 0) {
+                    sb.append("\n- you usually answer correctly in about ")
+                            .append(String.format("%.1f", medianMillis / 1000.0)).append(" seconds");
+                }
+            }
+            if(this.answersAccepted.length > 1) {
+                sb.append("\n- any of the ").append(this.answersAccepted.length).append(" translations in the word bank is accepted");
+            }
+            return sb.toString();
         }
 
         public void printReport() {
@@ -355,30 +637,39 @@ public class Quiz {
         }
 
         private void evaluate() {
-            System.out.println(this.wordTested + " (" + this.entry.getGrammar() + ") : ");
-            if(this.entry.getCountSeen() > 0) {
-                System.out.println("- you've seen this word " + this.entry.getCountSeen() + " times");
-                System.out.println("- you have " + ((this.entry.getCountIncorrect() == 0) ? "not missed this word before." : "missed this word " + this.entry.getCountIncorrect() + " time(s).") );
-                System.out.println("- last seen on " + timeToRelativeTime(this.entry.getLastSeen()) );
+            if(this.entry.getCountSeen() != this.countSeenWhenPrepared) {
+                // the same word came up earlier in this quiz, so its history changed since it was prepared
+                this.prompt = buildPrompt();
             }
-            this.answerGiven = this.scanner.nextLine();
+            System.out.println(this.prompt);
+            long promptedAt = System.nanoTime();
+            this.answerGiven = answers.nextAnswer(this.entry, this.wordTested, this.answerExpected);
+            this.responseNanos = System.nanoTime() - promptedAt;
+            this.answeredAt = System.currentTimeMillis();
 
             String given = sanitize(this.answerGiven);
             String expected = sanitize(this.answerExpected);
             String message;
-            if(given.equals(expected)){
+            if(given.equals(expected) || isAccepted(given)){
                 this.isCorrect = true;
                 message = "Correct!";
             } else {
                 this.isCorrect = false;
                 this.entry.incrementCountIncorrect();
                 message = "Incorrect. Looking for : " + expected + " instead of " + given;
+                if(this.answersAccepted.length > 1) {
+                    message += "\n(accepted: " + String.join(", ", this.answersAccepted) + ")";
+                }
             }
             this.entry.incrementCountSeen();
             this.entry.updateLastSeen();
             System.out.println(message + "\n");
         }
 
+        private boolean isAccepted(String given) {
+            return this.translations.isTranslation(this.direction, this.wordTested, given);
+        }
+
         private String sanitize(String term) {
             return term.toLowerCase(Locale.ROOT).trim();
         }
@@ -394,6 +685,23 @@ public class Quiz {
         public WordBankEntry getEntry() {
             return entry;
         }
+
+        // the direction actually asked, i.e., RANDOM is resolved to one of the other two
+        public QuizDirection getDirection() {
+            return direction;
+        }
+
+        public boolean isCorrect() {
+            return isCorrect;
+        }
+
+        public long getAnsweredAt() {
+            return answeredAt;
+        }
+
+        public long getResponseNanos() {
+            return responseNanos;
+        }
     }
 
     public enum QuizDirection {
@@ -415,7 +723,12 @@ public class Quiz {
     public enum QuizType {
         RANDOM("random"),
         LEAST_RECENTLY_SEEN("least recently seen"),
-        MOST_INCORRECT("most times answered incorrectly");
+        MOST_INCORRECT("most times answered incorrectly"),
+        SLOW_BUT_CORRECT("slowest correct answers"),
+        FILTERED("filtered by grammar and history"),
+        ADAPTIVE("adaptive, stops when your level is clear"),
+        NEAR_SKILL("words near your skill level"),
+        LEITNER("Leitner boxes");
 
         private final String quizType;
 
@@ -428,6 +741,16 @@ public class Quiz {
         }
     }
 
+    /*
+    Where the answers to a quiz come from: the learner at the console, or e.g. a simulated learner (see
+    QuizSimulation). Called on the quiz's own thread, once per word, right after the prompt is printed.
+     */
+    public interface AnswerSource {
+        AnswerSource CONSOLE = (entry, wordTested, answerExpected) -> new Scanner(System.in).nextLine();
+
+        String nextAnswer(WordBankEntry entry, String wordTested, String answerExpected);
+    }
+
     public static class FatalQuizException extends Exception {
         public FatalQuizException(String message) {
             super("FATAL > " +message);
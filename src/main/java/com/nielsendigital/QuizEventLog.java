@@ -0,0 +1,406 @@
+package com.nielsendigital;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+QuizEventLog is an append-only log of every answer given in a quiz. It lives next to the word bank file in a
+<word bank>.events/ directory and is split into segments that are rolled once they reach maxSegmentBytes, so the
+word bank file itself is never touched when analysing answers.
+
+Segment layout:
+    "LLEV" + version byte, then records of
+    [int payloadLength][long answeredAt][long entryId][byte direction][byte isCorrect][long responseNanos]
+    [varint answerLength][answer UTF-8 bytes]
+
+A record that was only partially written (e.g., the app was killed mid-write) ends the segment when read, and is
+cut off when the segment is next appended to, so the records after it can be read.
+ */
+public class QuizEventLog implements Closeable {
+    public static final byte[] SEGMENT_MAGIC = {'L', 'L', 'E', 'V'};
+    public static final byte SEGMENT_VERSION = 1;
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_EXTENSION = ".qel";
+    private static final int FIXED_PAYLOAD_BYTES = 8 + 8 + 1 + 1 + 8;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final long maxSegmentBytes;
+    private final ByteBuffer buffer;
+    private FileChannel segment;
+    private int segmentNumber;
+    private long segmentSize;
+
+    public QuizEventLog(File directory, long maxSegmentBytes) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.segment = null;
+        this.segmentNumber = -1;
+        this.segmentSize = 0;
+    }
+
+    public QuizEventLog(File directory) {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES);
+    }
+
+    // e.g., data/german-english.csv logs to data/german-english.events/
+    public static File directoryFor(File wordBankFile) {
+        String name = wordBankFile.getName();
+        int extensionIndex = name.lastIndexOf('.');
+        if(extensionIndex > 0) {
+            name = name.substring(0, extensionIndex);
+        }
+        return new File(wordBankFile.getAbsoluteFile().getParentFile(), name + ".events");
+    }
+
+    public synchronized void append(long answeredAt,
+                                    long entryId,
+                                    Quiz.QuizDirection direction,
+                                    String answerGiven,
+                                    boolean isCorrect,
+                                    long responseNanos) throws IOException {
+        String answer = (answerGiven == null) ? "" : answerGiven;
+        byte[] answerBytes = answer.getBytes(StandardCharsets.UTF_8);
+        int payloadLength = FIXED_PAYLOAD_BYTES + varIntSize(answerBytes.length) + answerBytes.length;
+        int recordLength = 4 + payloadLength;
+
+        openSegmentFor(recordLength);
+        if(this.buffer.remaining() < recordLength) {
+            flushBuffer();
+        }
+        if(this.buffer.remaining() < recordLength) {
+            // a single answer bigger than the buffer is written on its own
+            ByteBuffer large = ByteBuffer.allocate(recordLength);
+            putRecord(large, payloadLength, answeredAt, entryId, direction, isCorrect, responseNanos, answerBytes);
+            large.flip();
+            while(large.hasRemaining()) {
+                this.segment.write(large);
+            }
+        } else {
+            putRecord(this.buffer, payloadLength, answeredAt, entryId, direction, isCorrect, responseNanos, answerBytes);
+        }
+        this.segmentSize += recordLength;
+    }
+
+    public synchronized void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flushBuffer();
+        if(this.segment != null) {
+            this.segment.close();
+            this.segment = null;
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public Reader reader() throws IOException {
+        flush();
+        return new Reader(segmentFiles(this.directory));
+    }
+
+    public static File[] segmentFiles(File directory) {
+        File[] files = directory.listFiles((dir, name) ->
+                name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_EXTENSION));
+        if(files == null) {
+            return new File[0];
+        }
+        // zero padded segment numbers sort in write order
+        Arrays.sort(files);
+        return files;
+    }
+
+    private void openSegmentFor(int recordLength) throws IOException {
+        if(this.segment != null && this.segmentSize + recordLength <= this.maxSegmentBytes) {
+            return;
+        }
+        if(this.segment == null && this.segmentNumber < 0) {
+            // continue the newest segment left by a previous session
+            if(!this.directory.isDirectory() && !this.directory.mkdirs()) {
+                throw new IOException("ERROR: could not create the event log directory " + this.directory);
+            }
+            File[] existing = segmentFiles(this.directory);
+            this.segmentNumber = (existing.length == 0) ? 0 : parseSegmentNumber(existing[existing.length - 1]);
+            File current = segmentFile(this.segmentNumber);
+            if(current.length() + recordLength <= this.maxSegmentBytes || current.length() <= SEGMENT_MAGIC.length + 1) {
+                openSegment(current);
+                return;
+            }
+        }
+        flushBuffer();
+        if(this.segment != null) {
+            this.segment.close();
+        }
+        this.segmentNumber++;
+        openSegment(segmentFile(this.segmentNumber));
+    }
+
+    private void openSegment(File file) throws IOException {
+        long validLength = file.isFile() ? validLength(file) : 0;
+        this.segment = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if(validLength < 0) {
+            // not a segment this version can read, so it is left as it is and the log goes on in a new one
+            this.segment.close();
+            this.segmentNumber++;
+            openSegment(segmentFile(this.segmentNumber));
+            return;
+        }
+        if(validLength < this.segment.size()) {
+            this.segment.truncate(validLength);
+        }
+        this.segmentSize = validLength;
+        if(this.segmentSize == 0) {
+            this.buffer.put(SEGMENT_MAGIC).put(SEGMENT_VERSION);
+            this.segmentSize = SEGMENT_MAGIC.length + 1;
+        }
+    }
+
+    /*
+    The length of the segment up to the end of its last whole record, i.e., without a record torn at its tail; 0 for
+    an empty segment or one whose header was torn, -1 for a segment with some other header.
+     */
+    private static long validLength(File file) throws IOException {
+        if(file.length() < SEGMENT_MAGIC.length + 1) {
+            return 0;
+        }
+        try (Reader reader = new Reader(new File[]{file})) {
+            while(reader.next()) {
+                // reads up to the last whole record
+            }
+            return reader.recordEnd;
+        }
+    }
+
+    private File segmentFile(int number) {
+        return new File(this.directory, SEGMENT_PREFIX + String.format("%06d", number) + SEGMENT_EXTENSION);
+    }
+
+    private static int parseSegmentNumber(File file) {
+        String name = file.getName();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_EXTENSION.length()));
+    }
+
+    private void flushBuffer() throws IOException {
+        if(this.segment == null) {
+            return;
+        }
+        this.buffer.flip();
+        while(this.buffer.hasRemaining()) {
+            this.segment.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    private static void putRecord(ByteBuffer target, int payloadLength, long answeredAt, long entryId,
+                                  Quiz.QuizDirection direction, boolean isCorrect, long responseNanos,
+                                  byte[] answerBytes) {
+        target.putInt(payloadLength);
+        target.putLong(answeredAt);
+        target.putLong(entryId);
+        target.put((byte) direction.ordinal());
+        target.put((byte) (isCorrect ? 1 : 0));
+        target.putLong(responseNanos);
+        int value = answerBytes.length;
+        while((value & ~0x7F) != 0) {
+            target.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        target.put((byte) value);
+        target.put(answerBytes);
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /*
+    Sequential reader over every segment. next() decodes the following record into this reader, which doubles as
+    the current event, so reading millions of answers allocates nothing but the answer text when it is asked for.
+     */
+    public static class Reader implements Closeable, QuizEvent {
+        private static final int READ_BUFFER_SIZE = 1024 * 1024;
+        private static final Quiz.QuizDirection[] DIRECTIONS = Quiz.QuizDirection.values();
+
+        private final File[] segments;
+        private ByteBuffer buffer;        // grown for a record bigger than it
+        private int segmentIndex;
+        private FileChannel channel;
+        private long recordEnd;           // offset in the current segment past the last record read, -1 if unreadable
+        private long answeredAt;
+        private long entryId;
+        private Quiz.QuizDirection direction;
+        private boolean isCorrect;
+        private long responseNanos;
+        private byte[] answerBytes;
+        private int answerLength;
+
+        private Reader(File[] segments) {
+            this.segments = segments;
+            this.buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.buffer.flip();
+            this.segmentIndex = -1;
+            this.recordEnd = -1;
+            this.answerBytes = new byte[64];
+        }
+
+        public boolean next() throws IOException {
+            while(true) {
+                if(this.channel == null && !openNextSegment()) {
+                    return false;
+                }
+                if(fill(4)) {
+                    int payloadLength = this.buffer.getInt();
+                    if(payloadLength >= FIXED_PAYLOAD_BYTES + 1 && fill(payloadLength)) {
+                        decode(payloadLength);
+                        this.recordEnd = this.channel.position() - this.buffer.remaining();
+                        return true;
+                    }
+                }
+                // end of segment (or a torn record at its tail)
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+
+        private void decode(int payloadLength) {
+            int start = this.buffer.position();
+            this.answeredAt = this.buffer.getLong();
+            this.entryId = this.buffer.getLong();
+            this.direction = DIRECTIONS[this.buffer.get()];
+            this.isCorrect = this.buffer.get() == 1;
+            this.responseNanos = this.buffer.getLong();
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = this.buffer.get();
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while((b & 0x80) != 0);
+            if(length > this.answerBytes.length) {
+                this.answerBytes = new byte[Math.max(length, this.answerBytes.length * 2)];
+            }
+            this.buffer.get(this.answerBytes, 0, length);
+            this.answerLength = length;
+            this.buffer.position(start + payloadLength);
+        }
+
+        private boolean openNextSegment() throws IOException {
+            while(++this.segmentIndex < this.segments.length) {
+                this.channel = FileChannel.open(this.segments[this.segmentIndex].toPath(), StandardOpenOption.READ);
+                this.buffer.clear().flip();
+                this.recordEnd = -1;
+                if(fill(SEGMENT_MAGIC.length + 1)) {
+                    byte[] magic = new byte[SEGMENT_MAGIC.length];
+                    this.buffer.get(magic);
+                    byte version = this.buffer.get();
+                    if(Arrays.equals(magic, SEGMENT_MAGIC) && version == SEGMENT_VERSION) {
+                        this.recordEnd = SEGMENT_MAGIC.length + 1;
+                        return true;
+                    }
+                    System.out.println("ERROR: skipping unreadable event log segment " + this.segments[this.segmentIndex]);
+                }
+                this.channel.close();
+                this.channel = null;
+            }
+            return false;
+        }
+
+        // makes sure at least `bytes` bytes are readable, returns false at the end of the segment
+        private boolean fill(int bytes) throws IOException {
+            if(this.buffer.remaining() >= bytes) {
+                return true;
+            }
+            if(bytes > this.buffer.capacity()) {
+                // a record bigger than the buffer (a very long answer), unless the segment ends before it does
+                if(this.buffer.remaining() + this.channel.size() - this.channel.position() < bytes) {
+                    return false;
+                }
+                ByteBuffer larger = ByteBuffer.allocate(bytes);
+                larger.put(this.buffer);
+                larger.flip();
+                this.buffer = larger;
+            }
+            this.buffer.compact();
+            while(this.buffer.position() < bytes) {
+                if(this.channel.read(this.buffer) < 0) {
+                    this.buffer.flip();
+                    return false;
+                }
+            }
+            this.buffer.flip();
+            return true;
+        }
+
+        @Override
+        public long getAnsweredAt() {
+            return answeredAt;
+        }
+
+        @Override
+        public long getEntryId() {
+            return entryId;
+        }
+
+        @Override
+        public Quiz.QuizDirection getDirection() {
+            return direction;
+        }
+
+        @Override
+        public boolean isCorrect() {
+            return isCorrect;
+        }
+
+        @Override
+        public long getResponseNanos() {
+            return responseNanos;
+        }
+
+        @Override
+        public String getAnswerGiven() {
+            return new String(this.answerBytes, 0, this.answerLength, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if(this.channel != null) {
+                this.channel.close();
+                this.channel = null;
+            }
+        }
+    }
+
+    public interface QuizEvent {
+        long getAnsweredAt();
+
+        long getEntryId();
+
+        Quiz.QuizDirection getDirection();
+
+        boolean isCorrect();
+
+        long getResponseNanos();
+
+        String getAnswerGiven();
+    }
+}
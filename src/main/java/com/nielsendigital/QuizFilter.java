@@ -0,0 +1,97 @@
+package com.nielsendigital;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+QuizFilter is the set of facet values a filtered quiz draws its words from. Values of the same facet are
+alternatives (noun OR verb), different facets all have to match (plural AND missed 50% or more). A facet without
+any selected value doesn't filter at all.
+ */
+public class QuizFilter {
+    private static final Metrics.Timer RESOLVE_TIMER = Metrics.timer("quiz.filter.resolve");
+
+    private final long[] selected; // per facet, bit i set if value i is selected
+
+    public QuizFilter() {
+        this.selected = new long[FacetIndex.Facet.values().length];
+    }
+
+    public QuizFilter select(FacetIndex.Facet facet, int value) {
+        if(value < 0 || value >= facet.getValues().length) {
+            throw new IllegalArgumentException("ERROR: " + facet.getText() + " has no value " + value);
+        }
+        this.selected[facet.ordinal()] |= 1L << value;
+        return this;
+    }
+
+    public boolean isSelected(FacetIndex.Facet facet, int value) {
+        return (this.selected[facet.ordinal()] & (1L << value)) != 0;
+    }
+
+    public boolean isEmpty() {
+        for(long values : this.selected) {
+            if(values != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the ordinals of every entry in the index that passes the filter
+    public EntryBitmap resolve(FacetIndex index) {
+        long start = RESOLVE_TIMER.start();
+        EntryBitmap result = null;
+        for(FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+            long values = this.selected[facet.ordinal()];
+            if(values == 0) {
+                continue;
+            }
+            EntryBitmap facetBitmap = null;
+            for(int v = 0; v < facet.getValues().length; v++) {
+                if((values & (1L << v)) != 0) {
+                    EntryBitmap valueBitmap = index.getBitmap(facet, v);
+                    facetBitmap = (facetBitmap == null) ? valueBitmap : facetBitmap.or(valueBitmap);
+                }
+            }
+            result = (result == null) ? facetBitmap : result.and(facetBitmap);
+        }
+        if(result == null) {
+            result = EntryBitmap.range(index.size());
+        }
+        RESOLVE_TIMER.stop(start);
+        return result;
+    }
+
+    public List<WordBankEntry> resolveEntries(FacetIndex index) {
+        int[] ordinals = resolve(index).toArray();
+        List<WordBankEntry> entries = new ArrayList<>(ordinals.length);
+        for(int ordinal : ordinals) {
+            entries.add(index.getEntry(ordinal));
+        }
+        return entries;
+    }
+
+    // e.g., "part of speech: noun or verb; number: plural"
+    public String describe() {
+        if(isEmpty()) {
+            return "all words";
+        }
+        StringBuilder sb = new StringBuilder();
+        for(FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+            List<String> values = new ArrayList<>();
+            for(int v = 0; v < facet.getValues().length; v++) {
+                if(isSelected(facet, v)) {
+                    values.add(facet.getValues()[v]);
+                }
+            }
+            if(!values.isEmpty()) {
+                if(sb.length() > 0) {
+                    sb.append("; ");
+                }
+                sb.append(facet.getText()).append(": ").append(String.join(" or ", values));
+            }
+        }
+        return sb.toString();
+    }
+}
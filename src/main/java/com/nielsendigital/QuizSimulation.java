@@ -0,0 +1,373 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/*
+QuizSimulation load-tests quiz selection and grading: it starts `learners` threads that each take
+`quizzesPerLearner` quizzes, going through every QuizType in turn, against one shared word bank, and reports the
+throughput, the latency percentiles per quiz type and where the learners were blocked on each other. Run it with
+`--simulate [learners] [quizzes per learner] [think ms] [accuracy]`.
+
+The answers come from a simulated learner (an AnswerSource) that is right with its own accuracy, drawn around the
+given one, after a think time drawn from the ThinkTime model. The bank is held in a MemoryWordBankStore, so it is
+never written back; the event logs and Leitner sessions go to a temporary directory that is removed afterwards.
+Quiz output is discarded while the simulation runs.
+
+Java 17 has no virtual threads, so each learner is a platform thread with a small stack; a few thousand of them
+are fine, most of them are sleeping through their think time at any moment.
+ */
+public class QuizSimulation {
+    public static final int DEFAULT_LEARNERS = 1000;
+    public static final int DEFAULT_QUIZZES_PER_LEARNER = 8;
+    public static final long DEFAULT_THINK_MILLIS = 20;
+    public static final double DEFAULT_ACCURACY = 0.75;
+    private static final int WORDS_PER_QUIZ = 10;
+    private static final long LEARNER_STACK_SIZE = 256 * 1024;
+    private static final long SAMPLE_MILLIS = 5;
+    private static final int SAMPLE_STACK_DEPTH = 12;
+    private static final int HOTSPOTS_SHOWN = 10;
+    private static final String WRONG_ANSWER = "?";
+
+    private final File wordBankFile;
+    private int learners = DEFAULT_LEARNERS;
+    private int quizzesPerLearner = DEFAULT_QUIZZES_PER_LEARNER;
+    private ThinkTime thinkTime = ThinkTime.LOG_NORMAL;
+    private long thinkMillis = DEFAULT_THINK_MILLIS;
+    private double accuracy = DEFAULT_ACCURACY;
+    private double accuracySpread = 0.15;
+
+    private final Map<Quiz.QuizType, TypeStats> statsByType;
+    private final ConcurrentHashMap<String, LongAdder> hotspots;
+    private final LongAdder contentionSamples;
+
+    public QuizSimulation(File wordBankFile) {
+        this.wordBankFile = wordBankFile;
+        this.statsByType = new EnumMap<>(Quiz.QuizType.class);
+        for(Quiz.QuizType type : Quiz.QuizType.values()) {
+            this.statsByType.put(type, new TypeStats());
+        }
+        this.hotspots = new ConcurrentHashMap<>();
+        this.contentionSamples = new LongAdder();
+    }
+
+    public QuizSimulation learners(int learners) {
+        this.learners = learners;
+        return this;
+    }
+
+    public QuizSimulation quizzesPerLearner(int quizzesPerLearner) {
+        this.quizzesPerLearner = quizzesPerLearner;
+        return this;
+    }
+
+    public QuizSimulation thinkTime(ThinkTime thinkTime, long meanMillis) {
+        this.thinkTime = thinkTime;
+        this.thinkMillis = meanMillis;
+        return this;
+    }
+
+    // each learner's accuracy is drawn from a normal distribution around accuracy, clamped to [0, 1]
+    public QuizSimulation accuracy(double accuracy, double spread) {
+        this.accuracy = accuracy;
+        this.accuracySpread = spread;
+        return this;
+    }
+
+    public void run() throws Exception {
+        Path eventDirectory = Files.createTempDirectory("languagelearner-simulation");
+        File simulatedFile = new File(eventDirectory.toFile(), this.wordBankFile.getName());
+        WordBank wordBank = new WordBank(simulatedFile,
+                new MemoryWordBankStore(WordBankStore.forFile(this.wordBankFile, false)), false);
+
+        System.out.println("Quiz simulation: " + this.learners + " learners x " + this.quizzesPerLearner +
+                " quizzes of " + WORDS_PER_QUIZ + " words, " + this.thinkTime.name().toLowerCase() + " think time of " +
+                this.thinkMillis + "ms, accuracy " + Math.round(this.accuracy * 100) + "% against " +
+                wordBank.getWordListSize() + " entries of " + this.wordBankFile.getName() + "\n");
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads.isThreadContentionMonitoringSupported()) {
+            threads.setThreadContentionMonitoringEnabled(true);
+        }
+        List<Learner> learnerList = new ArrayList<>(this.learners);
+        List<Thread> learnerThreads = new ArrayList<>(this.learners);
+        CountDownLatch startGate = new CountDownLatch(1);
+        for(int i = 0; i < this.learners; i++) {
+            Learner learner = new Learner(i, wordBank, startGate);
+            learnerList.add(learner);
+            Thread thread = new Thread(null, learner, "learner-" + i, LEARNER_STACK_SIZE);
+            thread.setDaemon(true);
+            learnerThreads.add(thread);
+            thread.start();
+        }
+
+        PrintStream console = System.out;
+        Thread sampler = new Thread(() -> sampleContention(threads), "simulation-sampler");
+        sampler.setDaemon(true);
+        long start = System.nanoTime();
+        long elapsedNanos;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            sampler.start();
+            startGate.countDown();
+            for(Thread thread : learnerThreads) {
+                thread.join();
+            }
+            elapsedNanos = System.nanoTime() - start;
+        } finally {
+            sampler.interrupt();
+            System.setOut(console);
+        }
+        sampler.join();
+
+        long blockedMillis = 0;
+        long blockedCount = 0;
+        for(Learner learner : learnerList) {
+            learner.mergeInto(this.statsByType);
+            blockedMillis += Math.max(0, learner.blockedMillis);
+            blockedCount += learner.blockedCount;
+        }
+        printReport(elapsedNanos, blockedMillis, blockedCount);
+        deleteDirectory(eventDirectory);
+    }
+
+    private void printReport(long elapsedNanos, long blockedMillis, long blockedCount) {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        long quizzes = 0;
+        long answers = 0;
+        for(TypeStats stats : this.statsByType.values()) {
+            quizzes += stats.completed;
+            answers += stats.answers;
+        }
+        System.out.println(String.format("%.1fs, %d quizzes (%.1f/s), %d answers (%.1f/s)\n",
+                seconds, quizzes, quizzes / seconds, answers, answers / seconds));
+
+        System.out.println("Quiz time less think time, by quiz type (ms):");
+        System.out.println(String.format("%-22s %8s %8s %8s %8s %8s %8s %8s %8s",
+                "", "done", "empty", "failed", "answers", "p50", "p90", "p99", "max"));
+        for(Map.Entry<Quiz.QuizType, TypeStats> entry : this.statsByType.entrySet()) {
+            TypeStats stats = entry.getValue();
+            LatencyHistogram latency = stats.serviceMillis;
+            System.out.println(String.format("%-22s %8d %8d %8d %8d %8d %8d %8d %8d",
+                    entry.getKey().name().toLowerCase(), stats.completed, stats.empty, stats.failed, stats.answers,
+                    latency.getPercentileMillis(50), latency.getPercentileMillis(90),
+                    latency.getPercentileMillis(99), latency.getPercentileMillis(100)));
+        }
+        for(Map.Entry<Quiz.QuizType, TypeStats> entry : this.statsByType.entrySet()) {
+            if(entry.getValue().firstFailure != null) {
+                System.out.println("- " + entry.getKey().name().toLowerCase() + " failed with: " +
+                        entry.getValue().firstFailure);
+            }
+        }
+
+        System.out.println("\nContention: learners were blocked on a monitor " + blockedCount + " times for " +
+                blockedMillis + "ms in all");
+        long samples = this.contentionSamples.sum();
+        if(samples == 0) {
+            System.out.println("- no learner was seen waiting on a lock");
+        } else {
+            System.out.println("Where learners were seen waiting on a lock (" + samples + " samples every " +
+                    SAMPLE_MILLIS + "ms):");
+            this.hotspots.entrySet().stream()
+                    .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                    .limit(HOTSPOTS_SHOWN)
+                    .forEach(e -> System.out.println(String.format("%6.1f%%  %s",
+                            100.0 * e.getValue().sum() / samples, e.getKey())));
+        }
+        System.out.println("\n" + Metrics.dump());
+    }
+
+    /*
+    Every SAMPLE_MILLIS, notes each learner thread blocked on a monitor or waiting for a lock someone holds, by the
+    lock's class and the innermost frame of this app it was taken in.
+     */
+    private void sampleContention(ThreadMXBean threads) {
+        while(!Thread.currentThread().isInterrupted()) {
+            for(ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds(), SAMPLE_STACK_DEPTH)) {
+                if(info == null || !isContended(info)) {
+                    continue;
+                }
+                this.contentionSamples.increment();
+                this.hotspots.computeIfAbsent(hotspotOf(info), key -> new LongAdder()).increment();
+            }
+            try {
+                Thread.sleep(SAMPLE_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static boolean isContended(ThreadInfo info) {
+        if(!info.getThreadName().startsWith("learner-") && !info.getThreadName().startsWith("quiz-prefetch")) {
+            return false;
+        }
+        return info.getThreadState() == Thread.State.BLOCKED ||
+                (info.getThreadState() == Thread.State.WAITING && info.getLockOwnerId() != -1);
+    }
+
+    private static String hotspotOf(ThreadInfo info) {
+        String lock = info.getLockName();
+        int identity = (lock == null) ? -1 : lock.indexOf('@');
+        String lockClass = (identity < 0) ? String.valueOf(lock) : lock.substring(0, identity);
+        for(StackTraceElement frame : info.getStackTrace()) {
+            if(frame.getClassName().startsWith(QuizSimulation.class.getPackageName())) {
+                return lockClass + " in " + frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) +
+                        "." + frame.getMethodName() + "()";
+            }
+        }
+        StackTraceElement[] stack = info.getStackTrace();
+        return lockClass + ((stack.length > 0) ? " in " + stack[0] : "");
+    }
+
+    private static void deleteDirectory(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            System.out.println("ERROR: could not remove the simulation's directory " + directory);
+            e.printStackTrace();
+        }
+    }
+
+    public enum ThinkTime {
+        NONE,
+        FIXED,
+        EXPONENTIAL,   // most answers come quickly, a few take a lot longer
+        LOG_NORMAL;    // a typical response time with a long tail, closest to real learners
+
+        long nextMillis(long meanMillis, Random random) {
+            switch(this) {
+                case FIXED:
+                    return meanMillis;
+                case EXPONENTIAL:
+                    return Math.round(-meanMillis * Math.log(1.0 - random.nextDouble()));
+                case LOG_NORMAL:
+                    double sigma = 0.75; // mean of exp(mu + sigma * N) is exp(mu + sigma^2 / 2)
+                    double mu = Math.log(Math.max(1, meanMillis)) - sigma * sigma / 2;
+                    return Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+                case NONE:
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    // per quiz type, summed over the learners once they are done
+    private static final class TypeStats {
+        long completed;
+        long empty;      // the quiz found no words to ask, e.g., nothing is due in a Leitner box yet
+        long failed;
+        long answers;
+        String firstFailure;
+        final LatencyHistogram serviceMillis = new LatencyHistogram();
+
+        void add(TypeStats other) {
+            this.completed += other.completed;
+            this.empty += other.empty;
+            this.failed += other.failed;
+            this.answers += other.answers;
+            if(this.firstFailure == null) {
+                this.firstFailure = other.firstFailure;
+            }
+            this.serviceMillis.add(other.serviceMillis);
+        }
+    }
+
+    private final class Learner implements Runnable, Quiz.AnswerSource {
+        private final int id;
+        private final WordBank wordBank;
+        private final CountDownLatch startGate;
+        private final Random random;
+        private final double learnerAccuracy;
+        private final Map<Quiz.QuizType, TypeStats> stats;
+        private long thinkNanos;    // slept in the current quiz
+        private int answersGiven;   // in the current quiz
+        long blockedMillis;
+        long blockedCount;
+
+        Learner(int id, WordBank wordBank, CountDownLatch startGate) {
+            this.id = id;
+            this.wordBank = wordBank;
+            this.startGate = startGate;
+            this.random = new Random(id);
+            this.learnerAccuracy = Math.max(0, Math.min(1, accuracy + accuracySpread * this.random.nextGaussian()));
+            this.stats = new HashMap<>();
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.startGate.await();
+            } catch (InterruptedException e) {
+                return;
+            }
+            Quiz.QuizType[] types = Quiz.QuizType.values();
+            for(int q = 0; q < quizzesPerLearner; q++) {
+                // learners start at different types so every type runs alongside the others
+                Quiz.QuizType type = types[(this.id + q) % types.length];
+                TypeStats typeStats = this.stats.computeIfAbsent(type, t -> new TypeStats());
+                this.thinkNanos = 0;
+                this.answersGiven = 0;
+                long start = System.nanoTime();
+                try {
+                    new Quiz(WORDS_PER_QUIZ, type, this.wordBank, Quiz.QuizDirection.RANDOM, null, this);
+                    if(this.answersGiven == 0) {
+                        typeStats.empty++;
+                    } else {
+                        typeStats.completed++;
+                        typeStats.answers += this.answersGiven;
+                        typeStats.serviceMillis.recordNanos(System.nanoTime() - start - this.thinkNanos);
+                    }
+                } catch (Exception | Error e) {
+                    typeStats.failed++;
+                    if(typeStats.firstFailure == null) {
+                        typeStats.firstFailure = e.toString();
+                    }
+                }
+            }
+            ThreadInfo info = ManagementFactory.getThreadMXBean().getThreadInfo(Thread.currentThread().getId());
+            if(info != null) {
+                this.blockedMillis = info.getBlockedTime(); // -1 without contention monitoring
+                this.blockedCount = info.getBlockedCount();
+            }
+        }
+
+        @Override
+        public String nextAnswer(WordBankEntry entry, String wordTested, String answerExpected) {
+            long think = thinkTime.nextMillis(thinkMillis, this.random);
+            if(think > 0) {
+                long start = System.nanoTime();
+                try {
+                    Thread.sleep(think);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                this.thinkNanos += System.nanoTime() - start;
+            }
+            this.answersGiven++;
+            return (this.random.nextDouble() < this.learnerAccuracy) ? answerExpected : WRONG_ANSWER;
+        }
+
+        void mergeInto(Map<Quiz.QuizType, TypeStats> statsByType) {
+            this.stats.forEach((type, typeStats) -> statsByType.get(type).add(typeStats));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.nielsendigital;
+
+/*
+RelativeTime renders how long ago something happened, e.g., "just now", "5 minutes ago", "3 weeks ago". Times
+are epoch millis and are rounded down to one coarse unit, so there are only a few hundred distinct strings; each
+is built the first time it is needed and then reused, which keeps formatting out of the quiz loop.
+ */
+public class RelativeTime {
+    private static final long MINUTE = 60_000L;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+    private static final long WEEK = 7 * DAY;
+    private static final long MONTH = 30 * DAY;
+    private static final long YEAR = 365 * DAY;
+
+    // the LastSeen written for words that were never quizzed, see WordBank.sanitizeStringToTimeStamp()
+    private static final long NEVER = WordBank.sanitizeStringToTimeStamp("").getTime();
+
+    private static final Unit[] UNITS = {
+            new Unit(YEAR, "year", 100),
+            new Unit(MONTH, "month", 13),
+            new Unit(WEEK, "week", 5),
+            new Unit(DAY, "day", 7),
+            new Unit(HOUR, "hour", 24),
+            new Unit(MINUTE, "minute", 60)
+    };
+
+    // e.g., getLastSeenMillis() of an entry, against the current time
+    public static String format(long epochMillis) {
+        return format(epochMillis, System.currentTimeMillis());
+    }
+
+    public static String format(long epochMillis, long nowMillis) {
+        if(epochMillis <= NEVER) {
+            return "never";
+        }
+        long age = nowMillis - epochMillis;
+        for(Unit unit : UNITS) {
+            if(age >= unit.millis) {
+                return unit.ago(age / unit.millis);
+            }
+        }
+        return "just now";
+    }
+
+    private static class Unit {
+        private final long millis;
+        private final String name;
+        private final String[] rendered; // index is the count, filled in on first use
+
+        private Unit(long millis, String name, int cached) {
+            this.millis = millis;
+            this.name = name;
+            this.rendered = new String[cached];
+        }
+
+        private String ago(long count) {
+            if(count >= this.rendered.length) {
+                return render(count);
+            }
+            String text = this.rendered[(int) count];
+            if(text == null) {
+                // racing threads may both render it, the strings are equal either way
+                text = render(count);
+                this.rendered[(int) count] = text;
+            }
+            return text;
+        }
+
+        private String render(long count) {
+            return (count == 1) ? "1 " + this.name + " ago" : count + " " + this.name + "s ago";
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/*
+ShardedWordBank spreads the entries of several word banks (one per language pair, e.g., german-english.csv and
+spanish-english.csv) over shardsPerPair shards each, by the hash of the entry's normalized foreign term. Each shard
+is a WordBank of its own over a MemoryWordBankStore, so it has its own copy-on-write snapshots and its own indexes
+(facets, entry keys), and a search runs on every shard at once on a fork-join pool and the results are merged.
+
+The shards hold the very entries of the word banks they were made from, which stay the ones quizzes select from
+and save to disk. When a pair's word list changes its shards are partitioned again from the new snapshot before
+the next search, so they never hold entries the pair no longer has. Hashing the term rather than taking its first
+letter keeps the shards even; most German nouns would otherwise land in the d shard (der, die, das).
+ */
+public class ShardedWordBank {
+    public static final int DEFAULT_SHARDS_PER_PAIR = Math.max(2, Runtime.getRuntime().availableProcessors());
+    private static final Metrics.Timer SEARCH_TIMER = Metrics.timer("wordbank.sharded.search");
+
+    private final List<WordBank> pairs;          // the word bank of each language pair, which saves its entries
+    private final Shard[] shards;                // pair p's shards are p * shardsPerPair ... + shardsPerPair - 1
+    private final int shardsPerPair;
+    private final AtomicReferenceArray<WordBank.Snapshot> partitionedFrom; // the snapshot each pair's shards hold
+    private final ForkJoinPool pool;
+
+    public ShardedWordBank(List<WordBank> pairs, int shardsPerPair, ForkJoinPool pool) throws Exception {
+        if(pairs.isEmpty() || shardsPerPair < 1) {
+            throw new IllegalArgumentException("ERROR: a sharded word bank needs a word bank and a shard per pair");
+        }
+        this.pairs = new ArrayList<>(pairs);
+        this.shardsPerPair = shardsPerPair;
+        this.pool = pool;
+        this.shards = new Shard[pairs.size() * shardsPerPair];
+        this.partitionedFrom = new AtomicReferenceArray<>(pairs.size());
+
+        for(int p = 0; p < this.pairs.size(); p++) {
+            WordBank pair = this.pairs.get(p);
+            WordBank.Snapshot snapshot = pair.getSnapshot();
+            List<List<WordBankEntry>> partitions = partition(snapshot.getEntries());
+            for(int s = 0; s < shardsPerPair; s++) {
+                this.shards[p * shardsPerPair + s] = new Shard(pair, s, partitions.get(s));
+            }
+            this.partitionedFrom.set(p, snapshot);
+        }
+    }
+
+    public ShardedWordBank(List<WordBank> pairs) throws Exception {
+        this(pairs, DEFAULT_SHARDS_PER_PAIR, ForkJoinPool.commonPool());
+    }
+
+    // loads each word bank file (one per language pair) and shards them
+    public static ShardedWordBank load(List<String> wordBankFileNames, int shardsPerPair) throws Exception {
+        List<WordBank> pairs = new ArrayList<>(wordBankFileNames.size());
+        for(String fileName : wordBankFileNames) {
+            pairs.add(WordBankLoader.load(fileName));
+        }
+        return new ShardedWordBank(pairs, shardsPerPair, ForkJoinPool.commonPool());
+    }
+
+    public List<WordBank> getLanguagePairs() {
+        return this.pairs;
+    }
+
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    public int getWordListSize() {
+        refresh();
+        int size = 0;
+        for(Shard shard : this.shards) {
+            size += shard.size();
+        }
+        return size;
+    }
+
+    public LinkedList<WordBankEntry> findWordBankEntries(String term, WordBank.EntryHeading heading) {
+        long start = SEARCH_TIMER.start();
+        LinkedList<WordBankEntry> results = new LinkedList<>(gather(shard -> shard.bank.findWordBankEntries(term, heading)));
+        SEARCH_TIMER.stop(start);
+        return results;
+    }
+
+    // runs query on every shard on the fork-join pool and concatenates the results
+    private <T> List<T> gather(Function<Shard, ? extends Collection<T>> query) {
+        refresh();
+        return this.pool.invoke(new ShardTask<>(query, 0, this.shards.length));
+    }
+
+    // partitions the shards of every language pair whose word list changed since they were made again
+    private void refresh() {
+        for(int p = 0; p < this.pairs.size(); p++) {
+            if(this.pairs.get(p).getSnapshot() != this.partitionedFrom.get(p)) {
+                repartition(p);
+            }
+        }
+    }
+
+    private synchronized void repartition(int p) {
+        WordBank.Snapshot snapshot = this.pairs.get(p).getSnapshot();
+        if(snapshot == this.partitionedFrom.get(p)) {
+            return; // another thread got here first
+        }
+        List<List<WordBankEntry>> partitions = partition(snapshot.getEntries());
+        for(int s = 0; s < this.shardsPerPair; s++) {
+            this.shards[p * this.shardsPerPair + s].fill(partitions.get(s));
+        }
+        this.partitionedFrom.set(p, snapshot);
+    }
+
+    private List<List<WordBankEntry>> partition(List<WordBankEntry> entries) {
+        List<List<WordBankEntry>> partitions = new ArrayList<>(this.shardsPerPair);
+        for(int s = 0; s < this.shardsPerPair; s++) {
+            partitions.add(new ArrayList<>());
+        }
+        for(WordBankEntry entry : entries) {
+            partitions.get(shardOf(entry.getForeignLanguage())).add(entry);
+        }
+        return partitions;
+    }
+
+    private int shardOf(String foreignTerm) {
+        return Math.floorMod(TranslationGraph.normalize(foreignTerm).hashCode(), this.shardsPerPair);
+    }
+
+    private final class ShardTask<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Function<Shard, ? extends Collection<T>> query;
+        private final int from;
+        private final int to;
+
+        ShardTask(Function<Shard, ? extends Collection<T>> query, int from, int to) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if(this.to - this.from == 1) {
+                return new ArrayList<>(this.query.apply(shards[this.from]));
+            }
+            int middle = (this.from + this.to) >>> 1;
+            ShardTask<T> left = new ShardTask<>(this.query, this.from, middle);
+            left.fork();
+            List<T> results = new ShardTask<>(this.query, middle, this.to).compute();
+            results.addAll(0, left.join());
+            return results;
+        }
+    }
+
+    private static final class Shard {
+        final WordBank bank;
+        final MemoryWordBankStore store;
+
+        Shard(WordBank pair, int index, List<WordBankEntry> entries) throws Exception {
+            this.store = new MemoryWordBankStore();
+            this.store.writeAll(entries);
+            this.bank = new WordBank(shardFile(pair.getWordBankFile(), index), this.store, false);
+        }
+
+        // replaces the shard's entries; a search meanwhile still sees the bank's previous snapshot
+        void fill(List<WordBankEntry> entries) {
+            this.store.writeAll(entries);
+            this.bank.setWordList(entries);
+        }
+
+        // names the shard next to its language pair's file; nothing is written there
+        private static File shardFile(File pairFile, int index) {
+            String name = pairFile.getName();
+            int extensionIndex = name.lastIndexOf('.');
+            String base = (extensionIndex > 0) ? name.substring(0, extensionIndex) : name;
+            return new File(pairFile.getAbsoluteFile().getParentFile(), base + ".shard" + index + ".csv");
+        }
+
+        int size() {
+            return this.bank.getWordListSize();
+        }
+    }
+}
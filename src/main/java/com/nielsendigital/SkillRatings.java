@@ -0,0 +1,127 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/*
+SkillRatings rates the learner and every WordBankEntry on one Elo scale: each graded answer is a match between the
+learner's skill and the entry's difficulty. A right answer to a hard word moves both ratings a lot, a right answer
+to an easy one barely at all, so unlike countIncorrect the ratings account for how often a word was seen and how
+hard the other words were.
+
+Entry difficulties are saved in the word bank's Difficulty column; the learner's skill is saved in skill.properties
+in the word bank's event log directory. An entry without a rating starts from an estimate based on its counts.
+ */
+public class SkillRatings {
+    public static final double INITIAL_RATING = 1500;
+    private static final double SCALE = 400;
+    private static final double LEARNER_K = 32;
+    private static final double ENTRY_K_MAX = 64; // a new entry's rating moves quickly ...
+    private static final double ENTRY_K_MIN = 16; // ... and settles as it is seen more often
+    private static final String FILE_NAME = "skill.properties";
+    private static final String LEARNER_RATING = "learnerRating";
+    private static final String RATED_ANSWERS = "ratedAnswers";
+
+    private final File ratingsFile;
+    private double learnerRating;
+    private long ratedAnswers;
+    private boolean isDirty;
+
+    private SkillRatings(File ratingsFile) {
+        this.ratingsFile = ratingsFile;
+        this.learnerRating = INITIAL_RATING;
+        this.ratedAnswers = 0;
+        this.isDirty = false;
+    }
+
+    public static SkillRatings load(File eventLogDirectory) {
+        SkillRatings ratings = new SkillRatings(new File(eventLogDirectory, FILE_NAME));
+        if(!ratings.ratingsFile.isFile()) {
+            return ratings;
+        }
+
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(ratings.ratingsFile, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+            ratings.learnerRating = Double.parseDouble(properties.getProperty(LEARNER_RATING, "" + INITIAL_RATING));
+            ratings.ratedAnswers = Long.parseLong(properties.getProperty(RATED_ANSWERS, "0"));
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("ERROR: could not read the learner rating from " + ratings.ratingsFile);
+            e.printStackTrace();
+            ratings.learnerRating = INITIAL_RATING;
+        }
+        return ratings;
+    }
+
+    // the rating at which a learner of INITIAL_RATING would get the entry right as often as its counts say
+    public static double estimateDifficulty(int countSeen, int countIncorrect) {
+        int missed = Math.min(countSeen, countIncorrect);
+        return INITIAL_RATING + SCALE * Math.log10((missed + 1.0) / (countSeen - missed + 1.0));
+    }
+
+    // chance a learner of this skill answers an entry of this difficulty correctly
+    public static double expectedScore(double skill, double difficulty) {
+        return 1.0 / (1.0 + Math.pow(10, (difficulty - skill) / SCALE));
+    }
+
+    /*
+    Updates the learner's and the entry's rating for one graded answer in O(1) and returns the entry's new
+    difficulty.
+     */
+    public synchronized double update(WordBankEntry entry, boolean isCorrect) {
+        double difficulty = entry.getDifficulty();
+        double surprise = (isCorrect ? 1.0 : 0.0) - expectedScore(this.learnerRating, difficulty);
+        double entryK = Math.max(ENTRY_K_MIN, ENTRY_K_MAX / Math.sqrt(1.0 + entry.getCountSeen()));
+
+        this.learnerRating += LEARNER_K * surprise;
+        difficulty -= entryK * surprise;
+        entry.setDifficulty(difficulty);
+        this.ratedAnswers++;
+        this.isDirty = true;
+        return difficulty;
+    }
+
+    public synchronized double getLearnerRating() {
+        return learnerRating;
+    }
+
+    public synchronized long getRatedAnswers() {
+        return ratedAnswers;
+    }
+
+    public synchronized boolean save() {
+        if(!this.isDirty) {
+            return true;
+        }
+        Properties properties = new Properties();
+        properties.setProperty(LEARNER_RATING, Double.toString(this.learnerRating));
+        properties.setProperty(RATED_ANSWERS, Long.toString(this.ratedAnswers));
+
+        // write a temp file and move it over the old one so a crash never leaves half a file behind
+        File parent = this.ratingsFile.getParentFile();
+        File tempFile = new File(parent, FILE_NAME + ".tmp");
+        try {
+            if(!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("could not create " + parent);
+            }
+            try (Writer writer = new FileWriter(tempFile, StandardCharsets.UTF_8)) {
+                properties.store(writer, "Learner skill rating");
+            }
+            Files.move(tempFile.toPath(), this.ratingsFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            this.isDirty = false;
+            return true;
+        } catch (IOException e) {
+            System.out.println("ERROR: could not save the learner rating to " + this.ratingsFile);
+            e.printStackTrace();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,77 @@
+package com.nielsendigital;
+
+/*
+StringPool hands out one canonical instance per distinct string value. Word bank columns like Grammar repeat the
+same few dozen values ("Noun neuter singular", ...) on almost every row, so routing them through a pool leaves one
+copy in the heap instead of one per WordBankEntry.
+
+The pool is an open addressing String[] table (linear probing) rather than a HashMap, so it costs one reference
+per slot and no node objects.
+ */
+public class StringPool {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private String[] table;
+    private int size;
+
+    public StringPool(int expectedSize) {
+        int capacity = DEFAULT_CAPACITY;
+        while(capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        this.table = new String[capacity];
+        this.size = 0;
+    }
+
+    public StringPool() {
+        this(DEFAULT_CAPACITY / 2);
+    }
+
+    // returns the pooled instance equal to value, adding value to the pool if it is new
+    public synchronized String canonicalize(String value) {
+        if(value == null) {
+            return null;
+        }
+        int mask = this.table.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        String pooled;
+        while((pooled = this.table[slot]) != null) {
+            if(pooled.equals(value)) {
+                return pooled;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.table[slot] = value;
+        this.size++;
+        if(this.size * 2 > this.table.length) {
+            resize();
+        }
+        return value;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void resize() {
+        String[] old = this.table;
+        this.table = new String[old.length * 2];
+        int mask = this.table.length - 1;
+        for(String value : old) {
+            if(value == null) {
+                continue;
+            }
+            int slot = mix(value.hashCode()) & mask;
+            while(this.table[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            this.table[slot] = value;
+        }
+    }
+
+    // spreads String.hashCode()'s low bits, which are poor for short similar strings
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,270 @@
+package com.nielsendigital;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/*
+TermArena keeps word bank rows off the heap, for corpora too big to hold as WordBankEntry objects (tens of millions
+of rows, where every collection has to trace them). A row is an int handle; its terms and statistics live in
+direct ByteBuffer chunks, so the heap holds a handful of buffer references and the distinct grammar texts however
+many rows there are, and a garbage collection has nothing to trace.
+
+    record : [lastSeen:8][countSeen:4][countIncorrect:4][difficulty:4][grammarId:4][leitnerBox:1][coding:1]
+             [foreignLength:2][nativeLength:2][answerLength:4][foreign][native][answer]
+
+Rows are appended (the direct buffers are freed with the arena), statistics are updated in place and the terms
+are decoded into Strings only when asked for, e.g., by toEntry() for the rows a quiz actually shows. The text is
+Latin-1 when every character fits, otherwise UTF-8, like WordBankEntry. Java 17 has no final Foreign Function &
+Memory API, hence direct buffers rather than MemorySegments.
+
+A row is published by the size write that ends add(), so a reader that got its handle from size() or add() sees
+the whole row without locking; the chunk tables are replaced, never grown in place, for the same reason. The
+statistics are read and written under the arena's lock, since they change after the row is published.
+
+A WordBank still holds its rows as WordBankEntry objects, and so do its indexes and Quiz; the arena is a separate
+store for corpora loaded outside one (see TermArenaBenchmark), with toEntry() for the rows that are quizzed.
+ */
+public class TermArena {
+    private static final int CHUNK_BITS = 24;                      // 16MB of records per chunk
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int HANDLE_BITS = 20;                     // 1M record addresses per index chunk
+    private static final int HANDLES_PER_CHUNK = 1 << HANDLE_BITS;
+    private static final int LAST_SEEN = 0;
+    private static final int COUNT_SEEN = 8;
+    private static final int COUNT_INCORRECT = 12;
+    private static final int DIFFICULTY = 16;
+    private static final int GRAMMAR_ID = 20;
+    private static final int LEITNER_BOX = 24;
+    private static final int CODING = 25;
+    private static final int FOREIGN_LENGTH = 26;
+    private static final int NATIVE_LENGTH = 28;
+    private static final int ANSWER_LENGTH = 30;
+    private static final int HEADER = 34;
+    private static final byte LATIN_1 = 0;
+    private static final byte UTF_8 = 1;
+
+    private volatile ByteBuffer[] chunks;        // the records, replaced by a longer copy when one is added
+    private volatile ByteBuffer[] addresses;     // per handle, chunk << 32 | position of its record
+    private final List<String> grammars;         // grammarId -> grammar text
+    private final HashMap<String, Integer> grammarIds;
+    private volatile int size;                   // written last by add(), which publishes the row
+    private long bytesUsed;
+
+    public TermArena() {
+        this.chunks = new ByteBuffer[0];
+        this.addresses = new ByteBuffer[0];
+        this.grammars = new ArrayList<>();
+        this.grammarIds = new HashMap<>();
+        this.size = 0;
+        this.bytesUsed = 0;
+    }
+
+    // streams the store into a new arena, so the entries are only ever short-lived garbage
+    public static TermArena load(WordBankStore store) throws IOException {
+        TermArena arena = new TermArena();
+        try (Stream<WordBankEntry> entries = store.stream(new StringPool())) {
+            entries.forEach(arena::add);
+        }
+        return arena;
+    }
+
+    public int add(WordBankEntry wbe) {
+        return add(wbe.getForeignLanguage(), wbe.getNativeLanguage(), wbe.getGrammar(), wbe.getAnswer(),
+                wbe.getLastSeenMillis(), wbe.getCountSeen(), wbe.getCountIncorrect(),
+                wbe.isRated() ? wbe.getDifficulty() : Double.NaN, wbe.getLeitnerBox());
+    }
+
+    // appends a row and returns its handle
+    public synchronized int add(String foreignLanguage, String nativeLanguage, String grammar, String answer,
+                                long lastSeenMillis, int countSeen, int countIncorrect,
+                                double difficulty, int leitnerBox) {
+        byte coding = (isLatin1(foreignLanguage) && isLatin1(nativeLanguage) && isLatin1(answer)) ? LATIN_1 : UTF_8;
+        byte[] foreignBytes = foreignLanguage.getBytes(charset(coding));
+        byte[] nativeBytes = nativeLanguage.getBytes(charset(coding));
+        byte[] answerBytes = answer.getBytes(charset(coding));
+        if(foreignBytes.length > 0xFFFF || nativeBytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("the term " + foreignLanguage + " is too long for the term arena");
+        }
+        int recordSize = HEADER + foreignBytes.length + nativeBytes.length + answerBytes.length;
+        if(recordSize > CHUNK_SIZE) {
+            throw new IllegalArgumentException("the answer of " + foreignLanguage + " is too long for the term arena");
+        }
+
+        ByteBuffer chunk = chunkFor(recordSize);
+        int position = chunk.position();
+        chunk.putLong(lastSeenMillis)
+                .putInt(countSeen)
+                .putInt(countIncorrect)
+                .putFloat((float) difficulty)
+                .putInt(grammarId(grammar))
+                .put((byte) Math.max(0, Math.min(LeitnerBoxes.BOXES - 1, leitnerBox)))
+                .put(coding)
+                .putShort((short) foreignBytes.length)
+                .putShort((short) nativeBytes.length)
+                .putInt(answerBytes.length)
+                .put(foreignBytes)
+                .put(nativeBytes)
+                .put(answerBytes);
+        this.bytesUsed += recordSize;
+
+        int handle = this.size;
+        if((handle & (HANDLES_PER_CHUNK - 1)) == 0) {
+            this.addresses = append(this.addresses,
+                    ByteBuffer.allocateDirect(HANDLES_PER_CHUNK * Long.BYTES).order(ByteOrder.nativeOrder()));
+        }
+        this.addresses[handle >>> HANDLE_BITS].putLong((handle & (HANDLES_PER_CHUNK - 1)) * Long.BYTES,
+                ((long) (this.chunks.length - 1) << 32) | position);
+        this.size = handle + 1;
+        return handle;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    // bytes of row data held off the heap (the chunks themselves are allocated CHUNK_SIZE at a time)
+    public synchronized long getBytesUsed() {
+        return this.bytesUsed;
+    }
+
+    public String getForeignLanguage(int handle) {
+        ByteBuffer chunk = chunkOf(handle);
+        int record = positionOf(handle);
+        return text(chunk, record, record + HEADER, chunk.getShort(record + FOREIGN_LENGTH) & 0xFFFF);
+    }
+
+    public String getNativeLanguage(int handle) {
+        ByteBuffer chunk = chunkOf(handle);
+        int record = positionOf(handle);
+        int foreignLength = chunk.getShort(record + FOREIGN_LENGTH) & 0xFFFF;
+        return text(chunk, record, record + HEADER + foreignLength, chunk.getShort(record + NATIVE_LENGTH) & 0xFFFF);
+    }
+
+    public String getAnswer(int handle) {
+        ByteBuffer chunk = chunkOf(handle);
+        int record = positionOf(handle);
+        int start = record + HEADER + (chunk.getShort(record + FOREIGN_LENGTH) & 0xFFFF)
+                + (chunk.getShort(record + NATIVE_LENGTH) & 0xFFFF);
+        return text(chunk, record, start, chunk.getInt(record + ANSWER_LENGTH));
+    }
+
+    public synchronized String getGrammar(int handle) {
+        return this.grammars.get(chunkOf(handle).getInt(positionOf(handle) + GRAMMAR_ID));
+    }
+
+    public synchronized long getLastSeenMillis(int handle) {
+        return chunkOf(handle).getLong(positionOf(handle) + LAST_SEEN);
+    }
+
+    public synchronized int getCountSeen(int handle) {
+        return chunkOf(handle).getInt(positionOf(handle) + COUNT_SEEN);
+    }
+
+    public synchronized int getCountIncorrect(int handle) {
+        return chunkOf(handle).getInt(positionOf(handle) + COUNT_INCORRECT);
+    }
+
+    // NaN until the row has been rated, see SkillRatings
+    public synchronized double getDifficulty(int handle) {
+        return chunkOf(handle).getFloat(positionOf(handle) + DIFFICULTY);
+    }
+
+    public synchronized int getLeitnerBox(int handle) {
+        return chunkOf(handle).get(positionOf(handle) + LEITNER_BOX);
+    }
+
+    // counts a graded answer in place, like Quiz does for a WordBankEntry
+    public synchronized void recordAnswer(int handle, boolean isCorrect, long answeredAtMillis) {
+        ByteBuffer chunk = chunkOf(handle);
+        int record = positionOf(handle);
+        chunk.putLong(record + LAST_SEEN, Math.max(answeredAtMillis, chunk.getLong(record + LAST_SEEN)));
+        chunk.putInt(record + COUNT_SEEN, chunk.getInt(record + COUNT_SEEN) + 1);
+        if(!isCorrect) {
+            chunk.putInt(record + COUNT_INCORRECT, chunk.getInt(record + COUNT_INCORRECT) + 1);
+        }
+    }
+
+    public synchronized void setDifficulty(int handle, double difficulty) {
+        chunkOf(handle).putFloat(positionOf(handle) + DIFFICULTY, (float) difficulty);
+    }
+
+    public synchronized void setLeitnerBox(int handle, int leitnerBox) {
+        chunkOf(handle).put(positionOf(handle) + LEITNER_BOX,
+                (byte) Math.max(0, Math.min(LeitnerBoxes.BOXES - 1, leitnerBox)));
+    }
+
+    // an on-heap copy of the row, e.g., for quizzing it; changes to the copy don't reach the arena
+    public synchronized WordBankEntry toEntry(int handle) {
+        return new WordBankEntry(getForeignLanguage(handle), getNativeLanguage(handle), getGrammar(handle),
+                getAnswer(handle), getLastSeenMillis(handle), getCountSeen(handle), getCountIncorrect(handle),
+                getDifficulty(handle), getLeitnerBox(handle));
+    }
+
+    private ByteBuffer chunkFor(int recordSize) {
+        if(this.chunks.length == 0 || this.chunks[this.chunks.length - 1].remaining() < recordSize) {
+            this.chunks = append(this.chunks, ByteBuffer.allocateDirect(CHUNK_SIZE).order(ByteOrder.nativeOrder()));
+        }
+        return this.chunks[this.chunks.length - 1];
+    }
+
+    private static ByteBuffer[] append(ByteBuffer[] buffers, ByteBuffer buffer) {
+        ByteBuffer[] appended = Arrays.copyOf(buffers, buffers.length + 1);
+        appended[buffers.length] = buffer;
+        return appended;
+    }
+
+    // reads size first, so the row and the tables it is in are visible
+    private long addressOf(int handle) {
+        int published = this.size;
+        if(handle < 0 || handle >= published) {
+            throw new IndexOutOfBoundsException("no row " + handle + " in a term arena of " + published);
+        }
+        return this.addresses[handle >>> HANDLE_BITS].getLong((handle & (HANDLES_PER_CHUNK - 1)) * Long.BYTES);
+    }
+
+    private ByteBuffer chunkOf(int handle) {
+        long address = addressOf(handle);
+        return this.chunks[(int) (address >>> 32)];
+    }
+
+    private int positionOf(int handle) {
+        return (int) addressOf(handle);
+    }
+
+    private int grammarId(String grammar) {
+        Integer id = this.grammarIds.get(grammar);
+        if(id == null) {
+            id = this.grammars.size();
+            this.grammars.add(grammar);
+            this.grammarIds.put(grammar, id);
+        }
+        return id;
+    }
+
+    private static String text(ByteBuffer chunk, int record, int start, int length) {
+        byte[] bytes = new byte[length];
+        chunk.get(start, bytes);
+        return new String(bytes, charset(chunk.get(record + CODING)));
+    }
+
+    private static boolean isLatin1(String value) {
+        for(int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset charset(byte coding) {
+        return (coding == LATIN_1) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+    }
+}
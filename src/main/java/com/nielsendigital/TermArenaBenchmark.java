@@ -0,0 +1,183 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+TermArenaBenchmark writes synthetic rows to a temporary csv word bank, loads it as WordBankEntry objects on the
+heap (WordBankStore.readAll) and streams it into a TermArena (TermArena.load), and compares, for each, the time to
+load them, the collections during the load, the heap left live, how long a full
+collection takes with the rows in place and how fast a random row is read back. Run it with
+`--arena-benchmark [rows]` (default DEFAULT_ROWS) and a heap big enough for the on-heap run, e.g., -Xmx4g for
+5,000,000 rows.
+ */
+public class TermArenaBenchmark {
+    public static final int DEFAULT_ROWS = 1_000_000;
+    private static final String[] GRAMMARS = {
+            "Noun masculine singular", "Noun feminine singular", "Noun neuter singular", "Noun plural",
+            "Verb infinitive", "Adjective", "Adverb", "Phrase"
+    };
+    private static final int FULL_GCS = 3;
+    private static final int LOOKUPS = 1_000_000;
+    private static final int WRITE_BATCH = 10_000;
+
+    public static void run(int rows) {
+        System.out.println("Term arena benchmark, " + rows + " rows (" +
+                Runtime.getRuntime().maxMemory() / (1024 * 1024) + "MB max heap)\n");
+        File wordBankFile = null;
+        Result onHeap;
+        Result offHeap;
+        try {
+            wordBankFile = File.createTempFile("arena-benchmark", ".csv");
+            WordBankStore store = new CsvWordBankStore(wordBankFile, false);
+            writeRows(store, rows);
+            onHeap = measureHeap(store);
+            offHeap = measureArena(store);
+        } catch (IOException e) {
+            System.out.println("ERROR: could not write or read the benchmark word bank " + wordBankFile);
+            e.printStackTrace();
+            return;
+        } finally {
+            if(wordBankFile != null && !wordBankFile.delete()) {
+                wordBankFile.deleteOnExit();
+            }
+        }
+
+        System.out.println(String.format("%-28s %16s %16s", "", "heap entries", "term arena"));
+        print("load (ms)", onHeap.loadMillis, offHeap.loadMillis);
+        print("collections during load", onHeap.loadCollections, offHeap.loadCollections);
+        print("collection time (ms)", onHeap.loadCollectionMillis, offHeap.loadCollectionMillis);
+        print("live heap (MB)", onHeap.liveHeapBytes / (1024 * 1024), offHeap.liveHeapBytes / (1024 * 1024));
+        print("off heap (MB)", onHeap.offHeapBytes / (1024 * 1024), offHeap.offHeapBytes / (1024 * 1024));
+        print("full collection (ms)", onHeap.fullCollectionMillis, offHeap.fullCollectionMillis);
+        print("random read (ns)", onHeap.readNanos, offHeap.readNanos);
+    }
+
+    // appends the rows in batches, so only one batch of entries is ever on the heap
+    private static void writeRows(WordBankStore store, int rows) throws IOException {
+        Random random = new Random(42);
+        List<WordBankEntry> batch = new ArrayList<>(WRITE_BATCH);
+        for(int i = 0; i < rows; i++) {
+            String nativeTerm = nativeTerm(i);
+            String grammar = GRAMMARS[random.nextInt(GRAMMARS.length)];
+            batch.add(new WordBankEntry(foreignTerm(i), nativeTerm, grammar, nativeTerm + "  " + grammar,
+                    random.nextLong() >>> 24, random.nextInt(50), random.nextInt(10), Double.NaN, 0));
+            if(batch.size() == WRITE_BATCH || i == rows - 1) {
+                store.append(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static Result measureHeap(WordBankStore store) throws IOException {
+        Result result = new Result();
+        long baseline = usedHeap();
+        GcSnapshot before = GcSnapshot.take();
+        long start = System.nanoTime();
+        List<WordBankEntry> entries = store.readAll(new StringPool());
+        result.loadMillis = (System.nanoTime() - start) / 1_000_000;
+        GcSnapshot after = GcSnapshot.take();
+        result.loadCollections = after.count - before.count;
+        result.loadCollectionMillis = after.millis - before.millis;
+        result.liveHeapBytes = usedHeap() - baseline;
+        result.fullCollectionMillis = fullCollectionMillis();
+
+        int rows = entries.size();
+        Random random = new Random(42);
+        long checksum = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < LOOKUPS && rows > 0; i++) {
+            checksum += entries.get(random.nextInt(rows)).getForeignLanguage().length();
+        }
+        result.readNanos = (System.nanoTime() - start) / LOOKUPS;
+        Reference.reachabilityFence(entries);
+        result.checksum = checksum;
+        return result;
+    }
+
+    private static Result measureArena(WordBankStore store) throws IOException {
+        Result result = new Result();
+        long baseline = usedHeap();
+        GcSnapshot before = GcSnapshot.take();
+        long start = System.nanoTime();
+        TermArena arena = TermArena.load(store);
+        result.loadMillis = (System.nanoTime() - start) / 1_000_000;
+        GcSnapshot after = GcSnapshot.take();
+        result.loadCollections = after.count - before.count;
+        result.loadCollectionMillis = after.millis - before.millis;
+        result.liveHeapBytes = usedHeap() - baseline;
+        result.offHeapBytes = arena.getBytesUsed();
+        result.fullCollectionMillis = fullCollectionMillis();
+
+        int rows = arena.size();
+        Random random = new Random(42);
+        long checksum = 0;
+        start = System.nanoTime();
+        for(int i = 0; i < LOOKUPS && rows > 0; i++) {
+            checksum += arena.getForeignLanguage(random.nextInt(rows)).length();
+        }
+        result.readNanos = (System.nanoTime() - start) / LOOKUPS;
+        Reference.reachabilityFence(arena);
+        result.checksum = checksum;
+        return result;
+    }
+
+    private static String foreignTerm(int i) {
+        return "das Wort " + Integer.toString(i, 36);
+    }
+
+    private static String nativeTerm(int i) {
+        return "the word " + Integer.toString(i, 36);
+    }
+
+    private static void print(String label, long onHeap, long offHeap) {
+        System.out.println(String.format("%-28s %16d %16d", label, onHeap, offHeap));
+    }
+
+    // average pause of a full collection with the rows live
+    private static long fullCollectionMillis() {
+        long start = System.nanoTime();
+        for(int i = 0; i < FULL_GCS; i++) {
+            System.gc();
+        }
+        return (System.nanoTime() - start) / 1_000_000 / FULL_GCS;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static final class Result {
+        long loadMillis;
+        long loadCollections;
+        long loadCollectionMillis;
+        long liveHeapBytes;
+        long offHeapBytes;
+        long fullCollectionMillis;
+        long readNanos;
+        long checksum;
+    }
+
+    private static final class GcSnapshot {
+        long count;
+        long millis;
+
+        static GcSnapshot take() {
+            GcSnapshot snapshot = new GcSnapshot();
+            for(GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                snapshot.count += Math.max(0, collector.getCollectionCount());
+                snapshot.millis += Math.max(0, collector.getCollectionTime());
+            }
+            return snapshot;
+        }
+    }
+}
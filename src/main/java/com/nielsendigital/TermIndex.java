@@ -0,0 +1,123 @@
+package com.nielsendigital;
+
+import java.util.Arrays;
+
+/*
+TermIndex keeps the ordinals of a WordBank entry snapshot sorted by one of its terms (foreign or native,
+normalized) and by the same term reversed, so the terms starting or ending with some text are one binary search
+away: a TermPattern like ver* or *ieren only runs its matcher on those rather than on every entry.
+ */
+public class TermIndex {
+    private final String[] terms;            // normalized, ascending
+    private final int[] ordinals;            // the ordinal of terms[i]
+    private final String[] reversedTerms;    // normalized and reversed, ascending
+    private final int[] reversedOrdinals;
+
+    private TermIndex(String[] terms, int[] ordinals, String[] reversedTerms, int[] reversedOrdinals) {
+        this.terms = terms;
+        this.ordinals = ordinals;
+        this.reversedTerms = reversedTerms;
+        this.reversedOrdinals = reversedOrdinals;
+    }
+
+    public static TermIndex build(WordBankEntry[] entries, WordBank.EntryHeading heading) {
+        String[] normalized = new String[entries.length];
+        String[] reversed = new String[entries.length];
+        for(int i = 0; i < entries.length; i++) {
+            String term = (heading == WordBank.EntryHeading.NATIVE_LANGUAGE)
+                    ? entries[i].getNativeLanguage() : entries[i].getForeignLanguage();
+            normalized[i] = TranslationGraph.normalize(term);
+            reversed[i] = reverse(normalized[i]);
+        }
+        int[] ordinals = sortedOrdinals(normalized);
+        int[] reversedOrdinals = sortedOrdinals(reversed);
+        return new TermIndex(permute(normalized, ordinals), ordinals, permute(reversed, reversedOrdinals), reversedOrdinals);
+    }
+
+    public int size() {
+        return this.terms.length;
+    }
+
+    // the ordinals of the entries whose term starts with prefix (normalized), in ascending order
+    public int[] withPrefix(String prefix) {
+        return ordinalsIn(this.ordinals, bounds(this.terms, prefix));
+    }
+
+    // the ordinals of the entries whose term ends with suffix (normalized), in ascending order
+    public int[] withSuffix(String suffix) {
+        return ordinalsIn(this.reversedOrdinals, bounds(this.reversedTerms, reverse(suffix)));
+    }
+
+    /*
+    The fewest candidates the pattern's prefix and suffix allow: ordinals of the entries that could match, in
+    ascending order, or null when the pattern pins down neither and every entry is a candidate.
+     */
+    public int[] candidates(TermPattern pattern) {
+        int[] prefixBounds = pattern.getPrefix().isEmpty() ? null : bounds(this.terms, pattern.getPrefix());
+        int[] suffixBounds = pattern.getSuffix().isEmpty() ? null : bounds(this.reversedTerms, reverse(pattern.getSuffix()));
+        if(prefixBounds == null && suffixBounds == null) {
+            return null;
+        }
+        // only the smaller range is copied and sorted
+        if(suffixBounds == null || (prefixBounds != null && width(prefixBounds) <= width(suffixBounds))) {
+            return ordinalsIn(this.ordinals, prefixBounds);
+        }
+        return ordinalsIn(this.reversedOrdinals, suffixBounds);
+    }
+
+    // {from, to} of the sorted terms starting with start
+    private static int[] bounds(String[] sorted, String start) {
+        int from = lowerBound(sorted, start);
+        int to = lowerBound(sorted, start + Character.MAX_VALUE);
+        return new int[]{from, Math.max(from, to)};
+    }
+
+    private static int width(int[] bounds) {
+        return bounds[1] - bounds[0];
+    }
+
+    private static int[] ordinalsIn(int[] ordinals, int[] bounds) {
+        int[] range = Arrays.copyOfRange(ordinals, bounds[0], bounds[1]);
+        Arrays.sort(range);
+        return range;
+    }
+
+    private static String reverse(String value) {
+        return new StringBuilder(value).reverse().toString();
+    }
+
+    private static int lowerBound(String[] sorted, String key) {
+        int low = 0;
+        int high = sorted.length;
+        while(low < high) {
+            int middle = (low + high) >>> 1;
+            if(sorted[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static int[] sortedOrdinals(String[] values) {
+        Integer[] order = new Integer[values.length];
+        for(int i = 0; i < values.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> values[a].compareTo(values[b]));
+        int[] ordinals = new int[values.length];
+        for(int i = 0; i < values.length; i++) {
+            ordinals[i] = order[i];
+        }
+        return ordinals;
+    }
+
+    private static String[] permute(String[] values, int[] ordinals) {
+        String[] permuted = new String[values.length];
+        for(int i = 0; i < ordinals.length; i++) {
+            permuted[i] = values[ordinals[i]];
+        }
+        return permuted;
+    }
+}
@@ -0,0 +1,143 @@
+package com.nielsendigital;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+TermPattern is a search pattern compiled once for a whole search, either a glob matched against the whole term
+(ver* for the terms starting with ver, *ieren for those ending in ieren, ? for any one character) or a regular
+expression between slashes found anywhere in the term (/ier(en|t)$/). Both ignore case.
+
+The literal text every match has to start or end with (ver for ver*, ieren for /ieren$/) is kept as the prefix and
+suffix, lower case, so a TermIndex can narrow the candidates before the matcher runs; they are empty when the
+pattern doesn't pin one down.
+ */
+public class TermPattern {
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final String text;
+    private final Pattern pattern;
+    private final boolean isRegex;
+    private final String prefix;
+    private final String suffix;
+
+    private TermPattern(String text, Pattern pattern, boolean isRegex, String prefix, String suffix) {
+        this.text = text;
+        this.pattern = pattern;
+        this.isRegex = isRegex;
+        this.prefix = prefix.toLowerCase(Locale.ROOT);
+        this.suffix = suffix.toLowerCase(Locale.ROOT);
+    }
+
+    // throws a PatternSyntaxException for a regular expression that doesn't compile
+    public static TermPattern compile(String text) {
+        String trimmed = text.trim();
+        if(trimmed.length() >= 2 && trimmed.startsWith("/") && trimmed.endsWith("/")) {
+            return compileRegex(trimmed, trimmed.substring(1, trimmed.length() - 1));
+        }
+        return compileGlob(trimmed);
+    }
+
+    private static TermPattern compileGlob(String glob) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for(int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if(c == '*' || c == '?') {
+                if(literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append((c == '*') ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if(literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        int firstWildcard = indexOfWildcard(glob);
+        String prefix = (firstWildcard < 0) ? glob : glob.substring(0, firstWildcard);
+        String suffix = (firstWildcard < 0) ? glob : glob.substring(Math.max(glob.lastIndexOf('*'), glob.lastIndexOf('?')) + 1);
+        return new TermPattern(glob, Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
+                false, prefix, suffix);
+    }
+
+    private static TermPattern compileRegex(String text, String regex) {
+        Pattern pattern = Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        // an alternation at any level could let a match start or end some other way
+        if(regex.indexOf('|') >= 0) {
+            return new TermPattern(text, pattern, true, "", "");
+        }
+        return new TermPattern(text, pattern, true, anchoredPrefix(regex), anchoredSuffix(regex));
+    }
+
+    // the literal characters right after a leading ^, less the last one if a quantifier follows it
+    private static String anchoredPrefix(String regex) {
+        if(!regex.startsWith("^")) {
+            return "";
+        }
+        int end = 1;
+        while(end < regex.length() && isLiteral(regex.charAt(end))) {
+            end++;
+        }
+        if(end < regex.length() && "?*{".indexOf(regex.charAt(end)) >= 0) {
+            end--; // e.g., ^vers?, where the s is optional
+        }
+        return regex.substring(1, Math.max(1, end));
+    }
+
+    // the literal characters right before a trailing, unescaped $
+    private static String anchoredSuffix(String regex) {
+        if(!regex.endsWith("$") || (regex.length() >= 2 && regex.charAt(regex.length() - 2) == '\\')) {
+            return "";
+        }
+        int start = regex.length() - 1;
+        while(start > 0 && isLiteral(regex.charAt(start - 1))) {
+            start--;
+        }
+        if(start > 0 && regex.charAt(start - 1) == '\\') {
+            start++; // the first of them is escaped, e.g., \d
+        }
+        return (start >= regex.length() - 1) ? "" : regex.substring(start, regex.length() - 1);
+    }
+
+    private static boolean isLiteral(char c) {
+        return REGEX_METACHARACTERS.indexOf(c) < 0;
+    }
+
+    private static int indexOfWildcard(String glob) {
+        int star = glob.indexOf('*');
+        int question = glob.indexOf('?');
+        if(star < 0 || question < 0) {
+            return Math.max(star, question);
+        }
+        return Math.min(star, question);
+    }
+
+    public boolean matches(String value) {
+        if(value == null) {
+            return false;
+        }
+        Matcher matcher = this.pattern.matcher(value.trim());
+        return this.isRegex ? matcher.find() : matcher.matches();
+    }
+
+    public String getPrefix() {
+        return this.prefix;
+    }
+
+    public String getSuffix() {
+        return this.suffix;
+    }
+
+    public boolean isRegex() {
+        return this.isRegex;
+    }
+
+    @Override
+    public String toString() {
+        return this.text;
+    }
+}
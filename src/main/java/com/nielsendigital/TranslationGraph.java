@@ -0,0 +1,170 @@
+package com.nielsendigital;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*
+TranslationGraph links every distinct native term to every foreign term it translates and back, across all rows of
+a word bank, e.g., "you" -- "du", "ihr", "Sie" and "die" -- "the", "them". Grading accepts any neighbor of the term
+that was shown, so a correct synonym from another row is no longer marked wrong.
+
+Terms are compared normalized (lower case, trimmed) like quiz answers. Each side keeps its terms sorted in a
+String[] (a term's id is its index) and its edges in compressed sparse rows:
+
+    neighbors of native id n = foreignIds[nativeOffsets[n] .. nativeOffsets[n + 1])
+
+so checking an answer is one binary search plus a scan of the prompt's neighbors. WordBank builds the graph at
+load and again only after the word list changes.
+ */
+public class TranslationGraph {
+    private static final String[] NONE = new String[0];
+
+    private final Side nativeSide;
+    private final Side foreignSide;
+
+    private TranslationGraph(Side nativeSide, Side foreignSide) {
+        this.nativeSide = nativeSide;
+        this.foreignSide = foreignSide;
+    }
+
+    public static TranslationGraph build(WordBankEntry[] entries) {
+        String[] nativeKeys = new String[entries.length];
+        String[] foreignKeys = new String[entries.length];
+        for(int i = 0; i < entries.length; i++) {
+            nativeKeys[i] = normalize(entries[i].getNativeLanguage());
+            foreignKeys[i] = normalize(entries[i].getForeignLanguage());
+        }
+        String[] nativeTerms = sortedUnique(nativeKeys);
+        String[] foreignTerms = sortedUnique(foreignKeys);
+
+        // one edge per distinct (native, foreign) pair, packed into a long so they sort and dedupe as primitives
+        long[] edges = new long[entries.length];
+        String[] nativeDisplay = new String[nativeTerms.length];
+        String[] foreignDisplay = new String[foreignTerms.length];
+        for(int i = 0; i < entries.length; i++) {
+            int nativeId = Arrays.binarySearch(nativeTerms, nativeKeys[i]);
+            int foreignId = Arrays.binarySearch(foreignTerms, foreignKeys[i]);
+            edges[i] = ((long) nativeId << 32) | foreignId;
+            if(nativeDisplay[nativeId] == null) {
+                nativeDisplay[nativeId] = entries[i].getNativeLanguage();
+            }
+            if(foreignDisplay[foreignId] == null) {
+                foreignDisplay[foreignId] = entries[i].getForeignLanguage();
+            }
+        }
+        Arrays.sort(edges);
+        int edgeCount = 0;
+        for(int i = 0; i < edges.length; i++) {
+            if(i == 0 || edges[i] != edges[i - 1]) {
+                edges[edgeCount++] = edges[i];
+            }
+        }
+
+        int[] from = new int[edgeCount];
+        int[] to = new int[edgeCount];
+        for(int i = 0; i < edgeCount; i++) {
+            from[i] = (int) (edges[i] >>> 32);
+            to[i] = (int) edges[i];
+        }
+        return new TranslationGraph(
+                new Side(nativeTerms, nativeDisplay, from, to, edgeCount),
+                new Side(foreignTerms, foreignDisplay, to, from, edgeCount));
+    }
+
+    public static String normalize(String term) {
+        return term.toLowerCase(Locale.ROOT).trim();
+    }
+
+    // every foreign term the native term translates to, as written in the word bank
+    public String[] getForeignTerms(String nativeTerm) {
+        return this.nativeSide.neighborTerms(nativeTerm, this.foreignSide);
+    }
+
+    // every native term the foreign term translates to, as written in the word bank
+    public String[] getNativeTerms(String foreignTerm) {
+        return this.foreignSide.neighborTerms(foreignTerm, this.nativeSide);
+    }
+
+    // true if the answer is linked to the term that was shown, in O(degree) of the shown term
+    public boolean isTranslation(Quiz.QuizDirection direction, String shownTerm, String answer) {
+        if(direction == Quiz.QuizDirection.NATIVE_TO_FOREIGN) {
+            return this.nativeSide.isLinked(shownTerm, this.foreignSide.idOf(answer));
+        }
+        return this.foreignSide.isLinked(shownTerm, this.nativeSide.idOf(answer));
+    }
+
+    public int getNativeTermCount() {
+        return this.nativeSide.terms.length;
+    }
+
+    public int getForeignTermCount() {
+        return this.foreignSide.terms.length;
+    }
+
+    private static String[] sortedUnique(String[] keys) {
+        String[] sorted = keys.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for(int i = 0; i < sorted.length; i++) {
+            if(i == 0 || !sorted[i].equals(sorted[i - 1])) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    // the terms of one language and, for each, the ids of the terms it links to in the other language
+    private static class Side {
+        private final String[] terms;   // normalized, sorted
+        private final String[] display; // as first written in the word bank
+        private final int[] offsets;
+        private final int[] neighbors;
+
+        private Side(String[] terms, String[] display, int[] from, int[] to, int edgeCount) {
+            this.terms = terms;
+            this.display = display;
+            this.offsets = new int[terms.length + 1];
+            this.neighbors = new int[edgeCount];
+            for(int i = 0; i < edgeCount; i++) {
+                this.offsets[from[i] + 1]++;
+            }
+            for(int id = 0; id < terms.length; id++) {
+                this.offsets[id + 1] += this.offsets[id];
+            }
+            int[] next = Arrays.copyOf(this.offsets, terms.length);
+            for(int i = 0; i < edgeCount; i++) {
+                this.neighbors[next[from[i]]++] = to[i];
+            }
+        }
+
+        private int idOf(String term) {
+            int id = Arrays.binarySearch(this.terms, normalize(term));
+            return (id < 0) ? -1 : id;
+        }
+
+        private boolean isLinked(String term, int otherId) {
+            int id = idOf(term);
+            if(id < 0 || otherId < 0) {
+                return false;
+            }
+            for(int i = this.offsets[id]; i < this.offsets[id + 1]; i++) {
+                if(this.neighbors[i] == otherId) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private String[] neighborTerms(String term, Side other) {
+            int id = idOf(term);
+            if(id < 0) {
+                return NONE;
+            }
+            String[] result = new String[this.offsets[id + 1] - this.offsets[id]];
+            for(int i = 0; i < result.length; i++) {
+                result[i] = other.display[this.neighbors[this.offsets[id] + i]];
+            }
+            return result;
+        }
+    }
+}
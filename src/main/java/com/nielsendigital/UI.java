@@ -3,10 +3,9 @@ package com.nielsendigital;
 import com.diogonunes.jcolor.Attribute;
 
 import java.io.File;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.regex.PatternSyntaxException;
 
 import static com.diogonunes.jcolor.Ansi.colorize;
 
@@ -86,6 +85,8 @@ public class UI {
                 ADD_ENTRY("a", "Add New Word"),
                 UPDATE_ENTRY("u", "Edit New Word"),
                 REMOVE_ENTRY("r", "Remove New Word"),
+                EXPORT("x", "Export Word Bank Statistics"),
+                EXPORT_HISTORY("h", "Export Answer History"),
                 EXIT("e", "Return to Main Menu");
 
                 private final String abbreviation;
@@ -109,7 +110,10 @@ public class UI {
             public enum SearchMenuItem implements WithAbbreviations {
                 FOREIGN("f", "by Foreign Term", WordBank.EntryHeading.FOREIGN_LANGUAGE),
                 NATIVE("n", "by Native Term", WordBank.EntryHeading.NATIVE_LANGUAGE),
-                GRAMMAR("g", "by Grammatical Term", WordBank.EntryHeading.GRAMMAR);
+                GRAMMAR("g", "by Grammatical Term", WordBank.EntryHeading.GRAMMAR),
+                ALL("a", "in All Fields, best matches first", null), // foreign, native, grammar and answer
+                PATTERN("p", "by Foreign Term Pattern (ver*, *ieren or /regex/)", WordBank.EntryHeading.FOREIGN_LANGUAGE),
+                NATIVE_PATTERN("q", "by Native Term Pattern", WordBank.EntryHeading.NATIVE_LANGUAGE);
 
                 private final String abbreviation;
                 private final String text;
@@ -135,6 +139,35 @@ public class UI {
                 }
             }
 
+            public enum ExportMenuItem implements WithAbbreviations {
+                CSV("c", "as CSV", WordBankExporter.ExportFormat.CSV),
+                JSON_LINES("j", "as JSON Lines", WordBankExporter.ExportFormat.JSON_LINES),
+                BINARY("b", "as compact binary", WordBankExporter.ExportFormat.BINARY);
+
+                private final String abbreviation;
+                private final String text;
+                private final WordBankExporter.ExportFormat exportFormat;
+
+                ExportMenuItem(String abbreviation, String text, WordBankExporter.ExportFormat exportFormat) {
+                    this.abbreviation = abbreviation;
+                    this.text = text;
+                    this.exportFormat = exportFormat;
+                }
+
+                public WordBankExporter.ExportFormat getExportFormat() {
+                    return exportFormat;
+                }
+
+                public String getText() {
+                    return text;
+                }
+
+                @Override
+                public String getAbbreviation() {
+                    return this.abbreviation;
+                }
+            }
+
             private static void run() throws Exception {
                 System.out.println(Draw.hr);
                 System.out.println("\t\t\t" + WordBankUI.menuName + " Manager");
@@ -165,6 +198,8 @@ public class UI {
                         case ADD_ENTRY -> addEntry(getWordBank());
                         case UPDATE_ENTRY -> editEntry(getWordBank());
                         case REMOVE_ENTRY -> removeEntry(getWordBank());
+                        case EXPORT -> exportWordBank(getWordBank(), false);
+                        case EXPORT_HISTORY -> exportWordBank(getWordBank(), true);
                         case EXIT -> UI.run();
                         default -> {
                             System.out.println(
@@ -213,8 +248,20 @@ public class UI {
                     assert searchTerm != null;
                     assert searchCategory != null;
 
-                    LinkedList<WordBankEntry> foundEntries =
-                            wordBank.findWordBankEntries(searchTerm, searchCategory.getEntryHeading());
+                    LinkedList<WordBankEntry> foundEntries;
+                    if(searchCategory == SearchMenuItem.ALL) {
+                        foundEntries = wordBank.searchAllFields(searchTerm, true);
+                    } else if(searchCategory == SearchMenuItem.PATTERN || searchCategory == SearchMenuItem.NATIVE_PATTERN) {
+                        try {
+                            foundEntries = wordBank.findMatchingEntries(searchTerm, searchCategory.getEntryHeading());
+                        } catch (PatternSyntaxException e) {
+                            System.out.println(colorize("ERROR: " + searchTerm + " is not a valid regular expression: " +
+                                    e.getDescription(), Attribute.BRIGHT_RED_TEXT()));
+                            return;
+                        }
+                    } else {
+                        foundEntries = wordBank.findWordBankEntries(searchTerm, searchCategory.getEntryHeading());
+                    }
 
                     System.out.println("RESULTS for : " +
                             colorize(searchTerm, Attribute.BRIGHT_BLUE_TEXT()) +
@@ -251,7 +298,10 @@ public class UI {
 
                         // table body
                         int count = 0;
-                        foundEntries.sort(Comparator.comparing(com.nielsendigital.WordBankEntry::getForeignLanguage));
+                        if(searchCategory != SearchMenuItem.ALL) {
+                            // an all fields search is already ranked
+                            foundEntries.sort(Comparator.comparing(com.nielsendigital.WordBankEntry::getForeignLanguage));
+                        }
 
                         for (com.nielsendigital.WordBankEntry wbe : foundEntries) {
                             count++;
@@ -271,6 +321,32 @@ public class UI {
 
             }
 
+            private static void exportWordBank(WordBank wordBank, boolean isHistory) {
+                System.out.println(Write.WordBankEntryEditorMenuHeading(menuName, "Exporting", wordBank));
+                System.out.println("Export format:");
+                System.out.println(getEnumMenuList(ExportMenuItem.values()));
+                System.out.print(Write.enterAbbreviationPrompt());
+
+                if (scanner.hasNext()) {
+                    ExportMenuItem exportItem = (ExportMenuItem) getEnumValueFromAbbreviation(scanner.next(), ExportMenuItem.values());
+                    scanner.nextLine();
+
+                    if (exportItem == null) {
+                        System.out.println(colorize("ERROR: couldn't determine export format.", Attribute.BRIGHT_RED_TEXT()));
+                        exportWordBank(wordBank, isHistory);
+                        return;
+                    }
+
+                    File exportFile = (isHistory) ?
+                            wordBank.exportHistory(exportItem.getExportFormat()) :
+                            wordBank.exportEntries(exportItem.getExportFormat());
+                    if (exportFile != null) {
+                        System.out.println("SUCCESS: exported " + ((isHistory) ? "answer history" : "statistics") +
+                                " to\n" + colorize(exportFile.getPath(), Attribute.BRIGHT_BLUE_TEXT()));
+                    }
+                }
+            }
+
             public static void printSpacingFathoms(String heading, int columnSize, String content, int spaceNeeded, int leftPadding, int rightPadding, String result) {
                 String formattedResult = "resultSize   : " + result.length();
                 if (heading.toUpperCase(Locale.ROOT).equals("RESULT")) {
@@ -374,7 +450,7 @@ public class UI {
             public static WordBank getWordBank() throws Exception {
                 File wordListFile = selectWordListFile();
                 assert wordListFile != null;
-                return new WordBank(wordListFile.getCanonicalPath());
+                return WordBankLoader.load(wordListFile);
             }
 
             // eventually could accept a File with the path to the data files directory 
@@ -382,18 +458,12 @@ public class UI {
                 System.out.println("Please select the Word Bank file you wish to use:");
 
                 // gather array of files from the data/ directory
-                Path root = Paths.get(new File(Main.class.getProtectionDomain().getCodeSource().getLocation()
-                        .toURI()).getPath());
-                Path dataDirPath = Paths.get( root.toString(),"..","src","main", "resources", "data");
-                if(root.toString().contains("LanguageLearner/target/")){
-                    dataDirPath = Paths.get( root.toString(),"..", "resources", "data");
-                }
-                File dataDir = dataDirPath.normalize().toFile();
-                String[] files = dataDir.list();
+                File dataDir = WordBankLoader.getDataDirectory();
+                // only word bank files, not the event log or export directories kept next to them
+                String[] files = dataDir.list((dir, name) -> new File(dir, name).isFile());
 
                 if (files == null || files.length < 1) {
-                    System.out.println("ROOT: " + root);
-                    System.out.println("dataDirPath: " + dataDirPath);
+                    System.out.println("dataDirPath: " + dataDir);
                     throw new Exception("ERROR: there are no files in the data directory.\n" + dataDir.getCanonicalPath());
                 }
 
@@ -474,7 +544,7 @@ public class UI {
                 // write to word bank file
                 entryEntries = (count == 1) ? "entry was" : "entries were";
                 // add the entries to the end of the list in memory
-                if (wordBank.appendWordBankEntriesList(newEntries) && wordBank.writeEntriesToFile()) {
+                if (wordBank.addEntries(newEntries)) {
                     System.out.println("SUCCESS: the Word Bank file was saved.");
                     // Success messaging will be printed out by WordBank class
                     // return to the main menu
@@ -501,7 +571,7 @@ public class UI {
                 // ---------- Grammar ----------
                 // Grammar: Part of speech + posChanges
                 // multi-line string is compiled
-                String grammar = getGrammar(partOfSpeech, posChanges);
+                String grammar = wordbank.canonicalize(getGrammar(partOfSpeech, posChanges));
 
                 // ---------- Native language ----------
                 // redisplay the foreign term information
@@ -626,20 +696,9 @@ public class UI {
             }
 
             private static String getGrammar(PartOfSpeech pos, ArrayList<? extends PosChange> posChangeList) {
-                ArrayList<String> grammarArrayList = new ArrayList<>();
-
-                /* PART OF SPEECH
-                   ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ */
-                grammarArrayList.add(pos.getText());
-
-                /* declension AND CONJUGATION
-                   ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ */
-                for (PosChange posChange : posChangeList) {
-                    grammarArrayList.add(posChange.toGrammarString());
-                }
-
-                // assemble grammarArray list into single multi lined string
-                return String.join("\n", grammarArrayList);
+                // Part of speech + declensions/conjugations are encoded as a GrammarCode bitset
+                // and only rendered as a multi lined string for display and the csv.
+                return GrammarCode.render(GrammarCode.of(pos, posChangeList));
             }
 
             private static PartOfSpeech getPartOfSpeech() {
@@ -1007,9 +1066,10 @@ public class UI {
                         System.out.println(Dialogs.Quiz.Configure.menuName + "\n");
                         int numWords = numberOfWords();
                         com.nielsendigital.Quiz.QuizType testType = type();
+                        QuizFilter filter = (testType == com.nielsendigital.Quiz.QuizType.FILTERED) ? filter() : null;
                         com.nielsendigital.Quiz.QuizDirection testDirection = direction();
-                        if (confirm(numWords, testType, testDirection)) {
-                            new com.nielsendigital.Quiz(numWords, testType, testDirection);
+                        if (confirm(numWords, testType, testDirection, filter)) {
+                            new com.nielsendigital.Quiz(numWords, testType, null, testDirection, filter);
                         } else {
                             run();
                         }
@@ -1019,11 +1079,18 @@ public class UI {
                     }
                 }
 
-                private static boolean confirm(int numWords, com.nielsendigital.Quiz.QuizType testType, com.nielsendigital.Quiz.QuizDirection testDirection) {
+                private static boolean confirm(int numWords, com.nielsendigital.Quiz.QuizType testType, com.nielsendigital.Quiz.QuizDirection testDirection, QuizFilter filter) {
                     System.out.println(Draw.hr_squiggle);
                     System.out.println("Please confirm the following config for your quiz:");
-                    System.out.println("\tNumber of Words: " + numWords);
+                    if (testType == com.nielsendigital.Quiz.QuizType.ADAPTIVE) {
+                        System.out.println("\tMaximum Number of Words: " + numWords);
+                    } else {
+                        System.out.println("\tNumber of Words: " + numWords);
+                    }
                     System.out.println("\tQuiz Type: " + testType.getQuizType());
+                    if (filter != null) {
+                        System.out.println("\tFilter: " + filter.describe());
+                    }
                     System.out.println("\tDirectional Focus: " + testDirection.getDirectionType());
                     System.out.println(Draw.hr_squiggle + "\n");
                     return askYesNoQuestion("Does this look right?");
@@ -1054,6 +1121,33 @@ public class UI {
                     return types[selection - 1];
                 }
 
+                // asks for the values of each facet in turn, e.g., "1,2" for nouns or verbs; blank skips a facet
+                private static QuizFilter filter() {
+                    QuizFilter filter = new QuizFilter();
+                    System.out.println("Which words should the quiz draw from? " +
+                            "Enter the numbers of the values you want, separated by commas, or just press enter for any.");
+                    for (FacetIndex.Facet facet : FacetIndex.Facet.values()) {
+                        String[] values = facet.getValues();
+                        System.out.println("\n" + facet.getText() + ":");
+                        for (int i = 0; i < values.length; i++) {
+                            System.out.println((i + 1) + ". " + values[i]);
+                        }
+                        String input = scanner.nextLine().trim();
+                        if (input.isEmpty()) {
+                            continue;
+                        }
+                        for (String selection : input.split("[\\s,]+")) {
+                            try {
+                                filter.select(facet, Integer.parseInt(selection) - 1);
+                            } catch (IllegalArgumentException e) {
+                                System.out.println("Skipped '" + selection + "'. " + Write.enterNumberBetween(1, values.length));
+                            }
+                        }
+                    }
+                    System.out.println("Got it! We'll quiz " + filter.describe() + ".");
+                    return filter;
+                }
+
                 private static com.nielsendigital.Quiz.QuizDirection direction() {
                     com.nielsendigital.Quiz.QuizDirection[] testDirs = com.nielsendigital.Quiz.QuizDirection.values();
                     int i = 0;
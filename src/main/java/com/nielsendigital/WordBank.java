@@ -1,35 +1,108 @@
 package com.nielsendigital;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /*
 WordBank manages a specific set of words (WordBankEntry (WBE) instances). Each WBE has fields which
 correspond to the csv that stores the persistent record and tracks progress.
 
 WordBank must be instantiated with a path to a csv that follows the tuple format of :
-    [ForeignLanguage,NativeLanguage,Grammar,Answer,LastSeen,CountSeen,CountIncorrect]
+    [ForeignLanguage,NativeLanguage,Grammar,Answer,LastSeen,CountSeen,CountIncorrect,Difficulty,LeitnerBox]
+where Difficulty and LeitnerBox (and any later column) may be missing or empty. The entries are read and written
+through a WordBankStore (csv, binary snapshot, B+tree or memory, see WordBankStore.forFile()); a store with
+point updates saves single entries in place and answers the least recently seen / most incorrect selections.
  */
 public class WordBank {
-    private File wordBankFile;
-    private final String delimiter;
-    private LinkedList<WordBankEntry> wordList; // i.e., the word bank
+    private static final Metrics.Timer LOAD_TIMER = Metrics.timer("wordbank.load");
+    private static final Metrics.Timer SEARCH_TIMER = Metrics.timer("wordbank.search");
+    private static final Metrics.Histogram SEARCH_RESULTS = Metrics.histogram("wordbank.search.results");
+    private static final Metrics.Timer SAVE_TIMER = Metrics.timer("wordbank.save");
+    private static final Metrics.Histogram BANK_SIZE = Metrics.histogram("wordbank.entries");
+    private static final Metrics.Histogram PATTERN_CANDIDATES = Metrics.histogram("wordbank.search.pattern.candidates");
+    private static final int PARALLEL_SEARCH_THRESHOLD = 20_000; // below this a parallel search costs more than it saves
+    private static final int EXACT_MATCH = 12;      // match qualities of searchAllFields(), 4 apart for the field weights
+    private static final int WORD_START_MATCH = 8;
+    private static final int CONTAINS_MATCH = 4;
+
+    private final File wordBankFile;
+    private final WordBankStore store;
+    private volatile Snapshot snapshot; // i.e., the word bank, replaced as a whole whenever entries change
+    private final Object writeLock;     // held while a new snapshot is made, so concurrent writers don't lose entries
     private final boolean shouldPrintDetails;
     private final int numberEntriesOnLoad;
+    private final StringPool stringPool; // canonical copies of the repetitive grammar text
+    private HashMap<String, WordBankEntry> entriesByKey; // by normalized foreign term, the store's key
+    private long entriesByKeyVersion;
+    private FacetIndex facetIndex;
+    private long facetIndexVersion;
+    private final QueryCache queryCache; // recent search results and quiz candidate pools
+    private final EnumMap<EntryHeading, TermIndex> termIndexes; // foreign and native term indexes, built on demand
+    private long termIndexesVersion;
+    private TranslationGraph translationGraph;
+    private long translationGraphVersion;
+    private DifficultyIndex difficultyIndex;
+    private long difficultyIndexVersion;
+    private LeitnerBoxes leitnerBoxes;
+    private long leitnerBoxesVersion;
+    private volatile QuizEventLog eventLog;     // created on first use, then read without the bank's lock
+    private volatile LatencyStats latencyStats;
+    private SkillRatings skillRatings;
 
     public WordBank(String pathname, boolean shouldPrintDetails) throws Exception {
+        this(requireFile(pathname), shouldPrintDetails);
+    }
+
+    public WordBank(File wordBankFile, boolean shouldPrintDetails) throws Exception {
+        this(wordBankFile, WordBankStore.forFile(wordBankFile, shouldPrintDetails), shouldPrintDetails);
+    }
+
+    /*
+    A word bank kept in the given store. The file names the bank; its event log, statistics and exports are kept
+    next to it (it need not exist, e.g., for a MemoryWordBankStore filled by hand).
+     */
+    public WordBank(File wordBankFile, WordBankStore store, boolean shouldPrintDetails) throws Exception {
+        Metrics.LoadEvent loadEvent = new Metrics.LoadEvent();
+        loadEvent.begin();
+        long start = LOAD_TIMER.start();
+
+        this.wordBankFile = wordBankFile;
+        this.store = store;
         this.shouldPrintDetails = shouldPrintDetails;
-        this.delimiter = ",";
-        this.wordList = new LinkedList<>();
-        if(!getFile(pathname)) {
-            throw new Exception("ERROR: csv file was not read at " + pathname);
-        }
+        this.snapshot = new Snapshot(0, new WordBankEntry[0], new int[0]);
+        this.writeLock = new Object();
+        this.stringPool = new StringPool();
+        this.termIndexes = new EnumMap<>(EntryHeading.class);
+        this.queryCache = new QueryCache();
         if(!readFileToEntries()) {
             throw new Exception("ERROR: populating the word bank.");
         }
-        this.numberEntriesOnLoad = this.wordList.size();
+        this.numberEntriesOnLoad = this.snapshot.size();
+        this.getTranslationGraph();
+
+        LOAD_TIMER.stop(start);
+        if(loadEvent.shouldCommit()) {
+            loadEvent.path = wordBankFile.getPath();
+            loadEvent.entries = this.numberEntriesOnLoad;
+            loadEvent.commit();
+        }
     }
 
     public WordBank(String pathname) throws Exception {
@@ -37,152 +110,552 @@ public class WordBank {
     }
 
     public boolean appendNewWordBankEntry(WordBankEntry wbe) {
-        return this.wordList.add(wbe);
+        return appendWordBankEntriesList(List.of(wbe));
     }
 
     public boolean appendWordBankEntriesList(List<WordBankEntry> wordBankEntries) {
-        return this.wordList.addAll(wordBankEntries);
+        if(wordBankEntries.isEmpty()) {
+            return false;
+        }
+        synchronized (this.writeLock) {
+            Snapshot from = this.snapshot;
+            int size = from.entries.length;
+            WordBankEntry[] entries = Arrays.copyOf(from.entries, size + wordBankEntries.size());
+            int[] codes = Arrays.copyOf(from.grammarCodes, entries.length);
+            for(WordBankEntry wbe : wordBankEntries) {
+                entries[size] = wbe;
+                codes[size++] = wbe.getGrammarCode();
+            }
+            this.snapshot = new Snapshot(from.version + 1, entries, codes);
+            // cached results the new entries don't belong in stay valid
+            this.queryCache.entriesAdded(wordBankEntries, from.version, from.version + 1);
+        }
+        return true;
+    }
+
+    // puts replacement in the place of the existing entry (the very same object); false if it isn't in the word bank
+    public boolean replaceEntry(WordBankEntry existing, WordBankEntry replacement) {
+        synchronized (this.writeLock) {
+            Snapshot from = this.snapshot;
+            for(int i = 0; i < from.entries.length; i++) {
+                if(from.entries[i] == existing) {
+                    WordBankEntry[] entries = from.entries.clone();
+                    int[] codes = from.grammarCodes.clone();
+                    entries[i] = replacement;
+                    codes[i] = replacement.getGrammarCode();
+                    this.snapshot = new Snapshot(from.version + 1, entries, codes);
+                    // cached results neither entry belongs in stay valid
+                    this.queryCache.entriesReplaced(List.of(existing), List.of(replacement),
+                            from.version, from.version + 1);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // the entries of the current snapshot, read only; entries added later go into a new snapshot instead
+    public List<WordBankEntry> getWordList() {
+        return this.snapshot.getEntries();
+    }
+
+    public void setWordList(List<WordBankEntry> wordList) {
+        publish(wordList.toArray(new WordBankEntry[0]));
+    }
+
+    public long getVersion() {
+        return this.snapshot.getVersion();
+    }
+
+    // the current version of the word list, which never changes; see Snapshot
+    public Snapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    // the current snapshot's entries; not to be modified
+    WordBankEntry[] getEntrySnapshot() {
+        return this.snapshot.entries;
+    }
+
+    int[] getGrammarCodes() {
+        return this.snapshot.grammarCodes;
+    }
+
+    // replaces the whole word list with a new snapshot of the entries
+    private void publish(WordBankEntry[] entries) {
+        int[] codes = new int[entries.length];
+        for(int i = 0; i < entries.length; i++) {
+            codes[i] = entries[i].getGrammarCode();
+        }
+        synchronized (this.writeLock) {
+            Snapshot from = this.snapshot;
+            this.snapshot = new Snapshot(from.version + 1, entries, codes);
+            // only the entries that left or joined the word list can change a cached result
+            Set<WordBankEntry> removed = Collections.newSetFromMap(new IdentityHashMap<>(from.entries.length * 2));
+            removed.addAll(from.getEntries());
+            List<WordBankEntry> added = new ArrayList<>();
+            for(WordBankEntry wbe : entries) {
+                if(!removed.remove(wbe)) {
+                    added.add(wbe);
+                }
+            }
+            this.queryCache.entriesReplaced(removed, added, from.version, from.version + 1);
+        }
+    }
+
+    // the word list entry for each store key, so entries scanned from the store map back to the ones in memory
+    private synchronized HashMap<String, WordBankEntry> getEntriesByKey() {
+        Snapshot current = this.snapshot;
+        if(this.entriesByKey == null || this.entriesByKeyVersion != current.version) {
+            this.entriesByKey = new HashMap<>(current.entries.length * 2);
+            for(WordBankEntry entry : current.entries) {
+                this.entriesByKey.putIfAbsent(TranslationGraph.normalize(entry.getForeignLanguage()), entry);
+            }
+            this.entriesByKeyVersion = current.version;
+        }
+        return this.entriesByKey;
+    }
+
+    /*
+    Facet bitmaps over the entry snapshot, rebuilt after the word list changes, after graded entries are saved (the
+    error rate and last seen facets) or when the last seen windows age.
+     */
+    public synchronized FacetIndex getFacetIndex() {
+        Snapshot current = this.snapshot;
+        if(this.facetIndex == null || this.facetIndexVersion != current.version
+                || this.facetIndex.isStale(System.currentTimeMillis())) {
+            this.facetIndex = FacetIndex.build(current.entries, current.grammarCodes);
+            this.facetIndexVersion = current.version;
+        }
+        return this.facetIndex;
+    }
+
+    // the statistics the error rate and last seen facets were built from have changed
+    private synchronized void invalidateFacetIndex() {
+        this.facetIndex = null;
+    }
+
+    // the foreign or native terms sorted forwards and backwards, rebuilt after the word list changes
+    public TermIndex getTermIndex(EntryHeading heading) {
+        return getTermIndex(this.snapshot, heading);
+    }
+
+    // the term index over this snapshot's ordinals
+    private synchronized TermIndex getTermIndex(Snapshot current, EntryHeading heading) {
+        if(this.termIndexesVersion != current.version) {
+            this.termIndexes.clear();
+            this.termIndexesVersion = current.version;
+        }
+        return this.termIndexes.computeIfAbsent(heading, h -> TermIndex.build(current.entries, h));
+    }
+
+    // every native term linked to all of its foreign terms and back, built at load and after the word list changes
+    public synchronized TranslationGraph getTranslationGraph() {
+        Snapshot current = this.snapshot;
+        if(this.translationGraph == null || this.translationGraphVersion != current.version) {
+            this.translationGraph = TranslationGraph.build(current.entries);
+            this.translationGraphVersion = current.version;
+        }
+        return this.translationGraph;
+    }
+
+    // entries sorted by Elo difficulty, kept in step with every rating change by recordRating()
+    public synchronized DifficultyIndex getDifficultyIndex() {
+        Snapshot current = this.snapshot;
+        if(this.difficultyIndex == null || this.difficultyIndexVersion != current.version) {
+            this.difficultyIndex = DifficultyIndex.build(current.entries);
+            this.difficultyIndexVersion = current.version;
+        }
+        return this.difficultyIndex;
+    }
+
+    // Leitner queues over the entry snapshot, built from the entries' boxes after the word list changes
+    public synchronized LeitnerBoxes getLeitnerBoxes() {
+        Snapshot current = this.snapshot;
+        if(this.leitnerBoxes == null || this.leitnerBoxesVersion != current.version) {
+            this.leitnerBoxes = LeitnerBoxes.build(current.entries);
+            this.leitnerBoxesVersion = current.version;
+        }
+        return this.leitnerBoxes;
+    }
+
+    public synchronized SkillRatings getSkillRatings() {
+        if(this.skillRatings == null) {
+            this.skillRatings = SkillRatings.load(QuizEventLog.directoryFor(this.wordBankFile));
+        }
+        return this.skillRatings;
+    }
+
+    // rates one graded answer and moves the entry within the difficulty index if there is one
+    public synchronized void recordRating(WordBankEntry entry, boolean isCorrect) {
+        getSkillRatings().update(entry, isCorrect);
+        if(this.difficultyIndex != null && this.difficultyIndexVersion == this.snapshot.version) {
+            this.difficultyIndex.update(entry);
+        }
+    }
+
+    // every answer is logged, so only the first call takes the bank's lock
+    public QuizEventLog getEventLog() {
+        QuizEventLog log = this.eventLog;
+        if(log == null) {
+            synchronized (this) {
+                log = this.eventLog;
+                if(log == null) {
+                    log = new QuizEventLog(QuizEventLog.directoryFor(this.wordBankFile));
+                    this.eventLog = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    public LatencyStats getLatencyStats() {
+        LatencyStats stats = this.latencyStats;
+        if(stats == null) {
+            synchronized (this) {
+                stats = this.latencyStats;
+                if(stats == null) {
+                    stats = LatencyStats.load(QuizEventLog.directoryFor(this.wordBankFile));
+                    this.latencyStats = stats;
+                }
+            }
+        }
+        return stats;
     }
 
-    public LinkedList<WordBankEntry> getWordList() {
-        return this.wordList;
+    public WordBankStore getStore() {
+        return this.store;
     }
 
-    public void setWordList(LinkedList<WordBankEntry> wordList) {
-        this.wordList = wordList;
+    public File getWordBankFile() {
+        return this.wordBankFile;
     }
 
     public String getPathName() {
         return this.wordBankFile.getName();
     }
 
-    private boolean getFile(String pathname) throws NullPointerException {
-        try {
-            File file = new File(pathname);
-            if(file.isFile()) {
-                this.wordBankFile = file;
-                return true;
-            }
-        } catch (NullPointerException e) {
-            System.out.println(e.getMessage());
-            e.printStackTrace();
+    private static File requireFile(String pathname) throws Exception {
+        File file = new File(pathname);
+        if(!file.isFile()) {
+            throw new Exception("ERROR: csv file was not read at " + pathname);
         }
-        return false;
+        return file;
     }
 
     public LinkedList<WordBankEntry> findWordBankEntries(String term, EntryHeading heading) {
-        LinkedList<WordBankEntry> resultsList = new LinkedList<>();
+        Metrics.SearchEvent searchEvent = new Metrics.SearchEvent();
+        searchEvent.begin();
+        long start = SEARCH_TIMER.start();
+
         String sanitizedTerm = term.trim().toLowerCase();
-        for(WordBankEntry wbe : this.wordList) {
-            switch(heading) {
-                case FOREIGN_LANGUAGE -> {
-                    if(sanitizedTerm.equalsIgnoreCase(wbe.getForeignLanguage())) resultsList.add(wbe);
-                }
-                case NATIVE_LANGUAGE -> {
-                    if(sanitizedTerm.equalsIgnoreCase(wbe.getNativeLanguage())) resultsList.add(wbe);
-                }
-                case GRAMMAR -> {
-                    if(wbe.getGrammar().toLowerCase().contains(sanitizedTerm)) resultsList.add(wbe);
-                }
+        String query = "search|" + heading + "|" + sanitizedTerm;
+        Snapshot current = this.snapshot;
+        long version = current.version;
+        List<WordBankEntry> cached = this.queryCache.get(query, version);
+        LinkedList<WordBankEntry> resultsList = new LinkedList<>();
+        GrammarCode.Query grammarQuery = (heading == EntryHeading.GRAMMAR) ? GrammarCode.parseQuery(sanitizedTerm) : null;
+
+        if(cached != null) {
+            resultsList.addAll(cached);
+        } else if(grammarQuery != null) {
+            // every word is a grammar term, so test the bitmasks instead of scanning the text
+            for(int i = 0; i < current.grammarCodes.length; i++) {
+                if(grammarQuery.matches(current.grammarCodes[i])) resultsList.add(current.entries[i]);
             }
+        } else {
+            for(WordBankEntry wbe : current.entries) {
+                if(matchesSearch(wbe, sanitizedTerm, heading, null)) resultsList.add(wbe);
+            }
+        }
+        if(cached == null) {
+            this.queryCache.put(query, version, resultsList, false,
+                    wbe -> matchesSearch(wbe, sanitizedTerm, heading, grammarQuery));
+        }
+
+        SEARCH_TIMER.stop(start);
+        SEARCH_RESULTS.record(resultsList.size());
+        if(searchEvent.shouldCommit()) {
+            searchEvent.heading = heading.name();
+            searchEvent.term = term;
+            searchEvent.results = resultsList.size();
+            searchEvent.commit();
         }
         return resultsList;
     }
 
-    public boolean isDuplicateEntry(String term) {
-        for(WordBankEntry wbe : this.wordList) {
-            if(term.equalsIgnoreCase(wbe.getForeignLanguage())) {
-                return true;
+    private static boolean matchesSearch(WordBankEntry wbe, String sanitizedTerm, EntryHeading heading,
+                                         GrammarCode.Query grammarQuery) {
+        if(grammarQuery != null) {
+            return grammarQuery.matches(wbe.getGrammarCode());
+        }
+        return switch(heading) {
+            case FOREIGN_LANGUAGE -> sanitizedTerm.equalsIgnoreCase(wbe.getForeignLanguage());
+            case NATIVE_LANGUAGE -> sanitizedTerm.equalsIgnoreCase(wbe.getNativeLanguage());
+            case GRAMMAR -> wbe.getGrammar().toLowerCase().contains(sanitizedTerm);
+            default -> false;
+        };
+    }
+
+    /*
+    Every entry whose text under the heading matches the pattern, a glob (ver*, *ieren) or a /regular expression/,
+    see TermPattern. A foreign or native term pattern only runs on the entries its prefix or suffix picks out of the
+    TermIndex, any other heading on every entry. Results are in word bank order. Throws a PatternSyntaxException
+    for a regular expression that doesn't compile.
+     */
+    public LinkedList<WordBankEntry> findMatchingEntries(String patternText, EntryHeading heading) {
+        Metrics.SearchEvent searchEvent = new Metrics.SearchEvent();
+        searchEvent.begin();
+        long start = SEARCH_TIMER.start();
+
+        String query = "pattern|" + heading + "|" + patternText.trim();
+        Snapshot current = this.snapshot;
+        long version = current.version;
+        List<WordBankEntry> cached = this.queryCache.get(query, version);
+        LinkedList<WordBankEntry> resultsList = new LinkedList<>();
+        if(cached != null) {
+            resultsList.addAll(cached);
+        } else {
+            TermPattern pattern = TermPattern.compile(patternText);
+            WordBankEntry[] entries = current.entries;
+            int[] candidates = null;
+            if(heading == EntryHeading.FOREIGN_LANGUAGE || heading == EntryHeading.NATIVE_LANGUAGE) {
+                candidates = getTermIndex(current, heading).candidates(pattern);
+            }
+            int candidateCount = (candidates == null) ? entries.length : candidates.length;
+            for(int c = 0; c < candidateCount; c++) {
+                WordBankEntry wbe = entries[(candidates == null) ? c : candidates[c]];
+                if(pattern.matches(valueOf(wbe, heading))) {
+                    resultsList.add(wbe);
+                }
             }
+            PATTERN_CANDIDATES.record(candidateCount);
+            this.queryCache.put(query, version, resultsList, false, wbe -> pattern.matches(valueOf(wbe, heading)));
         }
 
-        return false;
+        SEARCH_TIMER.stop(start);
+        SEARCH_RESULTS.record(resultsList.size());
+        if(searchEvent.shouldCommit()) {
+            searchEvent.heading = heading.name();
+            searchEvent.term = patternText;
+            searchEvent.results = resultsList.size();
+            searchEvent.commit();
+        }
+        return resultsList;
     }
 
-    private boolean clearWordBankList() {
-        this.wordList.clear();
-        return this.getWordList().size() == 0;
+    /*
+    Every entry with the term in its foreign, native, grammar or answer text, ignoring case. Each entry of the
+    snapshot is scored on its own, in parallel once the bank is PARALLEL_SEARCH_THRESHOLD entries or more. Ranked,
+    the best matches come first: an exact match before one at the start of a word before one anywhere, then the
+    foreign term before the native term, grammar and answer; otherwise results are in word bank order.
+     */
+    public LinkedList<WordBankEntry> searchAllFields(String term, boolean ranked) {
+        Metrics.SearchEvent searchEvent = new Metrics.SearchEvent();
+        searchEvent.begin();
+        long start = SEARCH_TIMER.start();
+
+        String sanitizedTerm = term.trim();
+        String query = "all|" + ranked + "|" + sanitizedTerm.toLowerCase(Locale.ROOT);
+        Snapshot current = this.snapshot;
+        long version = current.version;
+        List<WordBankEntry> cached = this.queryCache.get(query, version);
+        LinkedList<WordBankEntry> resultsList;
+        if(cached != null) {
+            resultsList = new LinkedList<>(cached);
+        } else {
+            WordBankEntry[] entries = current.entries;
+            int[] scores = new int[entries.length];
+            IntStream ordinals = IntStream.range(0, entries.length);
+            if(entries.length >= PARALLEL_SEARCH_THRESHOLD) {
+                ordinals = ordinals.parallel();
+            }
+            ordinals.forEach(i -> scores[i] = matchScore(entries[i], sanitizedTerm));
+
+            IntStream matches = IntStream.range(0, entries.length).filter(i -> scores[i] > 0);
+            if(entries.length >= PARALLEL_SEARCH_THRESHOLD) {
+                matches = matches.parallel();
+            }
+            resultsList = ranked
+                    ? matches.boxed()
+                            .sorted(Comparator.comparingInt((Integer i) -> scores[i]).reversed()) // stable, so bank order within a score
+                            .map(i -> entries[i])
+                            .collect(Collectors.toCollection(LinkedList::new))
+                    : matches.mapToObj(i -> entries[i]).collect(Collectors.toCollection(LinkedList::new));
+            this.queryCache.put(query, version, resultsList, false, wbe -> matchScore(wbe, sanitizedTerm) > 0);
+        }
+
+        SEARCH_TIMER.stop(start);
+        SEARCH_RESULTS.record(resultsList.size());
+        if(searchEvent.shouldCommit()) {
+            searchEvent.heading = "ALL";
+            searchEvent.term = term;
+            searchEvent.results = resultsList.size();
+            searchEvent.commit();
+        }
+        return resultsList;
     }
 
-    private boolean readFileToEntries() {
-        LinkedList<WordBankEntry> wordList = readFileToEntries(this.wordBankFile,
-                this.wordList,
-                this.delimiter,
-                this.shouldPrintDetails);
-        return wordList != null;
+    // the entry's text under the heading, as shown in the csv
+    private static String valueOf(WordBankEntry wbe, EntryHeading heading) {
+        return switch(heading) {
+            case FOREIGN_LANGUAGE -> wbe.getForeignLanguage();
+            case NATIVE_LANGUAGE -> wbe.getNativeLanguage();
+            case GRAMMAR -> wbe.getGrammar();
+            case ANSWER -> wbe.getAnswer();
+            default -> wbe.getAllValues()[heading.getIndex()];
+        };
     }
 
-    public static LinkedList<WordBankEntry> readFileToEntries(File wordBankFile,
-                                                        LinkedList<WordBankEntry> wordList,
-                                                        String delimiter, boolean shouldPrintDetails) {
-        try {
-            BufferedReader br = new BufferedReader(new FileReader(wordBankFile));
-            String line;
-            int prevNumEntries = wordList.size();
-            LinkedList<WordBankEntry> copyWordList = new LinkedList<>(wordList);
+    // the best match of term in any field of the entry, 0 if there is none; see searchAllFields()
+    private static int matchScore(WordBankEntry wbe, String term) {
+        int best = fieldScore(wbe.getForeignLanguage(), term, 3);
+        best = Math.max(best, fieldScore(wbe.getNativeLanguage(), term, 2));
+        best = Math.max(best, fieldScore(wbe.getGrammar(), term, 1));
+        if(best < EXACT_MATCH) {
+            best = Math.max(best, fieldScore(wbe.getAnswer(), term, 0));
+        }
+        return best;
+    }
 
-            int count = -1; // once in loop immediately goes to 0, then checks to see if 1st row is a header row
-            boolean hasHeaderRow = true;
+    private static int fieldScore(String field, String term, int fieldWeight) {
+        if(field == null || term.isEmpty() || field.length() < term.length()) {
+            return 0;
+        }
+        if(field.equalsIgnoreCase(term)) {
+            return EXACT_MATCH + fieldWeight;
+        }
+        int quality = 0;
+        char first = Character.toLowerCase(term.charAt(0));
+        for(int i = 0; i <= field.length() - term.length() && quality < WORD_START_MATCH; i++) {
+            // cheap test of the first character before comparing the whole term
+            if(Character.toLowerCase(field.charAt(i)) == first && field.regionMatches(true, i, term, 0, term.length())) {
+                quality = (i == 0 || !Character.isLetterOrDigit(field.charAt(i - 1))) ? WORD_START_MATCH : CONTAINS_MATCH;
+            }
+        }
+        return (quality == 0) ? 0 : quality + fieldWeight;
+    }
 
-            while((line = br.readLine()) != null) {
-                count++;
+    // returns the word bank's shared copy of a grammar (or other often repeated) value
+    public String canonicalize(String value) {
+        return this.stringPool.canonicalize(value);
+    }
 
-                // skip heading row
-                if(hasHeaderRow && count == 0) {
-                    continue;
-                }
+    public boolean isDuplicateEntry(String term) {
+        for(WordBankEntry wbe : this.snapshot.entries) {
+            if(term.equalsIgnoreCase(wbe.getForeignLanguage())) {
+                return true;
+            }
+        }
 
-                // use limit: -1 to include empty columns from csv
-                String[] cols = line.split(delimiter, -1);
+        return false;
+    }
 
-                if(cols.length != EntryHeading.values().length) {
-                    System.out.println("ERROR: some lines in the CSV do not have the correct number of " +
-                            EntryHeading.values().length + " columns." +
-                            "\nCheck entry (" + count + ") " + cols[EntryHeading.FOREIGN_LANGUAGE.getIndex()] +
-                            ":" + cols[EntryHeading.NATIVE_LANGUAGE.getIndex()] +
-                            "\ncols currently has a length of " + cols.length);
-                }
+    // the count least recently seen entries, oldest first
+    public List<WordBankEntry> findLeastRecentlySeen(int count) {
+        String query = "leastRecentlySeen|" + count;
+        long version = this.snapshot.version;
+        List<WordBankEntry> cached = this.queryCache.get(query, version);
+        if(cached != null) {
+            return new ArrayList<>(cached);
+        }
+        List<WordBankEntry> oldest = scanLeastRecentlySeen(count);
+        // a row changes the result if it is in it (seen again now) or is older than the newest one in it
+        Set<WordBankEntry> inResult = Collections.newSetFromMap(new IdentityHashMap<>());
+        inResult.addAll(oldest);
+        boolean isShort = oldest.size() < count;
+        long newestLastSeen = oldest.isEmpty() ? Long.MAX_VALUE : oldest.get(oldest.size() - 1).getLastSeenMillis();
+        this.queryCache.put(query, version, oldest, true, wbe -> isShort || inResult.contains(wbe)
+                || wbe.getLastSeenMillis() < newestLastSeen);
+        return oldest;
+    }
 
-                // new WordBankEntry(ForeignLanguage,NativeLanguage,Grammar,Answer) as Strings
-                wordList.add(new WordBankEntry(
-                        cols[EntryHeading.FOREIGN_LANGUAGE.getIndex()].replace("\"", ""),
-                        cols[EntryHeading.NATIVE_LANGUAGE.getIndex()].replace("\"", ""),
-                        cols[EntryHeading.GRAMMAR.getIndex()].replace("\"", ""),
-                        cols[EntryHeading.ANSWER.getIndex()].replace("\"", ""),
-                        sanitizeStringToTimeStamp(cols[EntryHeading.LAST_SEEN.getIndex()].replace("\"", "")),
-                        sanitizeStringToInt(cols[EntryHeading.COUNT_SEEN.getIndex()].replace("\"", "")),
-                        sanitizeStringToInt(cols[EntryHeading.COUNT_INCORRECT.getIndex()].replace("\"", ""))
-                ));
-
-                if(shouldPrintDetails) {
-                    System.out.println("Entry " + count + " : " +
-                            cols[EntryHeading.FOREIGN_LANGUAGE.getIndex()] + " , " +
-                            cols[EntryHeading.NATIVE_LANGUAGE.getIndex()]
-                    );
-                }
+    private List<WordBankEntry> scanLeastRecentlySeen(int count) {
+        if(this.store.supportsPointUpdates()) {
+            try {
+                return toWordListEntries(this.store.scanByLastSeen(count));
+            } catch (IOException e) {
+                System.out.println("ERROR: could not scan the last seen index of " + this.wordBankFile);
+                e.printStackTrace();
+            }
+        }
+        List<WordBankEntry> entries = new ArrayList<>(getWordList());
+        sortByStatistic(entries, WordBankEntry::getLastSeenMillis);
+        return new ArrayList<>(entries.subList(0, Math.max(0, Math.min(count, entries.size()))));
+    }
 
-            } // end while((line = br.readLine()) != null)
+    // every entry answered incorrectly at least minCountIncorrect times
+    public List<WordBankEntry> findIncorrectEntries(int minCountIncorrect) {
+        String query = "incorrect|" + minCountIncorrect;
+        long version = this.snapshot.version;
+        List<WordBankEntry> cached = this.queryCache.get(query, version);
+        if(cached != null) {
+            return new ArrayList<>(cached);
+        }
+        List<WordBankEntry> incorrect = scanIncorrectEntries(minCountIncorrect);
+        this.queryCache.put(query, version, incorrect, true, wbe -> wbe.getCountIncorrect() >= minCountIncorrect);
+        return incorrect;
+    }
 
-            int expectedWordBankSize = prevNumEntries + count;
-            if(!hasHeaderRow) expectedWordBankSize++;
+    private List<WordBankEntry> scanIncorrectEntries(int minCountIncorrect) {
+        if(this.store.supportsPointUpdates()) {
+            try {
+                return toWordListEntries(this.store.scanByCountIncorrect(minCountIncorrect));
+            } catch (IOException e) {
+                System.out.println("ERROR: could not scan the count incorrect index of " + this.wordBankFile);
+                e.printStackTrace();
+            }
+        }
+        List<WordBankEntry> entries = new ArrayList<>();
+        for(WordBankEntry wbe : this.snapshot.entries) {
+            if(wbe.getCountIncorrect() >= minCountIncorrect) {
+                entries.add(wbe);
+            }
+        }
+        return entries;
+    }
 
-            if(expectedWordBankSize != wordList.size()) {
-                System.out.println("ERROR: Current size of the word bank is different than it should be\n" +
-                        prevNumEntries + " : prev size\n" +
-                        expectedWordBankSize + " : expected size\n" +
-                        wordList.size() + " : current word bank size\n" +
-                        (expectedWordBankSize - wordList.size()) + " : difference");
-                System.out.println("Restored prior list.");
-                return copyWordList;
+    // swaps the copies a store scan decoded for the word list's own entries
+    private List<WordBankEntry> toWordListEntries(List<WordBankEntry> scanned) {
+        HashMap<String, WordBankEntry> byKey = getEntriesByKey();
+        List<WordBankEntry> entries = new ArrayList<>(scanned.size());
+        for(WordBankEntry stored : scanned) {
+            WordBankEntry entry = byKey.get(TranslationGraph.normalize(stored.getForeignLanguage()));
+            if(entry != null) {
+                entries.add(entry);
             }
+        }
+        return entries;
+    }
 
-            return wordList;
+    /*
+    Sorts the entries by a statistic read once per entry beforehand, so a quiz grading some of them meanwhile can't
+    upset the sort (or break its contract). Entries with the same value keep their order.
+     */
+    static void sortByStatistic(List<WordBankEntry> entries, ToLongFunction<WordBankEntry> statistic) {
+        WordBankEntry[] unsorted = entries.toArray(new WordBankEntry[0]);
+        long[] values = new long[unsorted.length];
+        Integer[] order = new Integer[unsorted.length];
+        for(int i = 0; i < unsorted.length; i++) {
+            values[i] = statistic.applyAsLong(unsorted[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> values[i]));
+        for(int i = 0; i < order.length; i++) {
+            entries.set(i, unsorted[order[i]]);
+        }
+    }
 
+    // replaces the word list with the entries read from the store, in one step
+    private boolean readFileToEntries() {
+        try {
+            publish(this.store.readAll(this.stringPool).toArray(new WordBankEntry[0]));
+            return true;
         } catch (IOException e) {
-            System.out.println(e.getMessage());
+            System.out.println("ERROR: could not read the word bank " + this.wordBankFile);
             e.printStackTrace();
         }
-        return null;
+        return false;
     }
 
     public static int sanitizeStringToInt (String stringInt) {
@@ -192,6 +665,14 @@ public class WordBank {
         return Integer.parseInt(stringInt);
     }
 
+    // NaN for an empty value, i.e., not set yet
+    public static double sanitizeStringToDouble(String stringDouble) {
+        if(stringDouble.isEmpty()) {
+            return Double.NaN;
+        }
+        return Double.parseDouble(stringDouble);
+    }
+
     public static Timestamp sanitizeStringToTimeStamp(String stringTs) {
         if(stringTs.isEmpty()) {
             stringTs = "0001-01-01 00:00:00";
@@ -199,67 +680,192 @@ public class WordBank {
         return Timestamp.valueOf(stringTs);
     }
 
+    /*
+    Writes the whole word bank and validates the write by reading the store back. The word list keeps its entries
+    (they aren't swapped for the ones read back), and the write lock is held throughout so an entry added or replaced
+    meanwhile is neither left out of the file nor lost.
+     */
     public boolean writeEntriesToFile()  {
-        BufferedWriter bw = null;
-        // create a string from the wordlist for writing to file
-        StringBuilder sb = new StringBuilder();
-        // include heading row
-        sb.append(getCvsHeadingsRow());
-        // csv body of wb entries
-        for(WordBankEntry wbe : this.wordList) {
-            sb.append(wbe.toCsvRow());
-        }
-
-        try {
-            Writer writer = new FileWriter(this.wordBankFile);
-            bw = new BufferedWriter(writer);
-            // write all lines to test.csv
-            bw.append(sb.toString());
-
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        } finally {
+        Metrics.SaveEvent saveEvent = new Metrics.SaveEvent();
+        saveEvent.begin();
+        long start = SAVE_TIMER.start();
+        synchronized (this.writeLock) {
+            Snapshot saved = this.snapshot;
             try {
-                if(bw != null) {
-                    bw.close();
-                }
-            } catch (Exception e ) {
-                System.out.println("Error in closing the BufferedWriter"+e);
+                this.store.writeAll(saved.getEntries());
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            saveStatistics();
+
+            SAVE_TIMER.stop(start);
+            BANK_SIZE.record(saved.size());
+            if(saveEvent.shouldCommit()) {
+                saveEvent.path = this.wordBankFile.getPath();
+                saveEvent.entries = saved.size();
+                saveEvent.commit();
             }
-        }
 
-        // the list size when the word bank was first created
-        int originalListSize = this.numberEntriesOnLoad;
-        // expects the current wordlist to have grown since load as words have been added by user
-        int rowsExpectedToAdd = this.getWordList().size() - originalListSize;
+            // the list size when the word bank was first created
+            int originalListSize = this.numberEntriesOnLoad;
+            // expects the current wordlist to have grown since load as words have been added by user
+            int rowsExpectedToAdd = saved.size() - originalListSize;
 
-        try {
-            // validate the previous file write
-            if(this.clearWordBankList() && this.readFileToEntries()) {
-                // the current word list should be the sum of the original size + entries added.
-                int entriesCountDiff = this.getWordList().size() - (originalListSize + rowsExpectedToAdd);
+            try {
+                // validate the previous file write
+                int entriesRead = this.store.readAll(this.stringPool).size();
+                // the stored word list should be the sum of the original size + entries added.
+                int entriesCountDiff = entriesRead - (originalListSize + rowsExpectedToAdd);
 
                 if( entriesCountDiff != 0) {
                     // different sized lists
                     System.out.println("ERROR: The old list and the new list are different sizes:" +
                             "\noriginal entries count : " + originalListSize + " entries" +
                             "\nexpected entries added : " + rowsExpectedToAdd + " new entries" +
-                            "\nnew entries count : " + this.getWordList().size() + " entries" +
+                            "\nnew entries count : " + entriesRead + " entries" +
                             "\n\nDesired Outcome: original + expected = new");
                 } else {
                     return true;
                 }
-            } else {
+            } catch (IOException e) {
                 System.out.println("ERROR: could not read csv file after update.");
+                e.printStackTrace();
             }
+        }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        return false;
+    }
+
+    /*
+    Saves only the given entries (e.g., the ones a quiz just graded) when the store can update entries in place,
+    otherwise writes the whole word bank like writeEntriesToFile().
+     */
+    public boolean saveEntries(Collection<WordBankEntry> changedEntries) {
+        this.queryCache.statisticsChanged(changedEntries);
+        invalidateFacetIndex();
+        if(!this.store.supportsPointUpdates()) {
+            return writeEntriesToFile();
+        }
+        long start = SAVE_TIMER.start();
+        try {
+            for(WordBankEntry entry : changedEntries) {
+                this.store.upsert(entry);
+            }
+            this.store.flush();
+            return true;
+        } catch (IOException ioe) {
+            System.out.println("ERROR: could not save " + changedEntries.size() + " entries to " + this.wordBankFile);
+            ioe.printStackTrace();
+        } finally {
+            saveStatistics();
+            SAVE_TIMER.stop(start);
         }
+        return false;
+    }
 
+    // appends new entries to the word list and to the end of the stored word bank
+    public boolean addEntries(List<WordBankEntry> newEntries) {
+        // under the write lock, so a whole word bank write can't store the new entries as well
+        synchronized (this.writeLock) {
+            if(!appendWordBankEntriesList(newEntries)) {
+                return false;
+            }
+            long start = SAVE_TIMER.start();
+            try {
+                this.store.append(newEntries);
+                this.store.flush();
+                return true;
+            } catch (IOException ioe) {
+                System.out.println("ERROR: could not add " + newEntries.size() + " entries to " + this.wordBankFile);
+                ioe.printStackTrace();
+            } finally {
+                SAVE_TIMER.stop(start);
+            }
+        }
         return false;
     }
 
+    private void saveStatistics() {
+        LatencyStats stats = this.latencyStats;
+        if(stats != null) {
+            stats.save();
+        }
+        if(this.skillRatings != null) {
+            this.skillRatings.save();
+        }
+    }
+
+    /*
+    Exports the word bank statistics into the exports directory next to the word bank file,
+    e.g., german-english.exports/german-english.jsonl. Returns the exported file or null if the export failed.
+     */
+    public File exportEntries(WordBankExporter.ExportFormat format) {
+        File exportFile = exportFileFor("." + format.getExtension());
+        if(exportFile == null) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(exportFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            WordBankExporter exporter = new WordBankExporter(channel, format);
+            exporter.writeHeader();
+            exporter.writeEntries(getWordList());
+            exporter.flush();
+            if(this.shouldPrintDetails) {
+                System.out.println("Exported " + exporter.getEntriesWritten() + " entries to " + exportFile);
+            }
+            return exportFile;
+        } catch (IOException ioe) {
+            System.out.println("ERROR: could not export the word bank to " + exportFile);
+            ioe.printStackTrace();
+        }
+        return null;
+    }
+
+    /*
+    Exports every answer recorded in the event log, e.g., german-english.exports/german-english-history.jsonl.
+    Returns the exported file or null if the export failed.
+     */
+    public File exportHistory(WordBankExporter.ExportFormat format) {
+        File exportFile = exportFileFor("-history." + format.getExtension());
+        if(exportFile == null) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(exportFile.toPath(),
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+             QuizEventLog.Reader reader = this.getEventLog().reader()) {
+            WordBankExporter exporter = new WordBankExporter(channel, format);
+            exporter.writeHistoryHeader();
+            while(reader.next()) {
+                exporter.writeEvent(reader);
+            }
+            exporter.flush();
+            if(this.shouldPrintDetails) {
+                System.out.println("Exported " + exporter.getEntriesWritten() + " answers to " + exportFile);
+            }
+            return exportFile;
+        } catch (IOException ioe) {
+            System.out.println("ERROR: could not export the answer history to " + exportFile);
+            ioe.printStackTrace();
+        }
+        return null;
+    }
+
+    private File exportFileFor(String suffix) {
+        String name = this.wordBankFile.getName();
+        int extensionIndex = name.lastIndexOf('.');
+        if(extensionIndex > 0) {
+            name = name.substring(0, extensionIndex);
+        }
+        File exportDir = new File(this.wordBankFile.getAbsoluteFile().getParentFile(), name + ".exports");
+        if(!exportDir.isDirectory() && !exportDir.mkdirs()) {
+            System.out.println("ERROR: could not create the export directory " + exportDir);
+            return null;
+        }
+        return new File(exportDir, name + suffix);
+    }
+
     public String getCvsHeadingsRow() {
         StringBuilder sb = new StringBuilder();
         int count = 0;
@@ -282,7 +888,39 @@ public class WordBank {
     }
 
     public int getWordListSize() {
-        return this.wordList.size();
+        return this.snapshot.size();
+    }
+
+    /*
+    One version of the word list. The entries array (and their grammar codes) is never changed once published, so
+    readers (searches, quiz selection, export) get a consistent list without locking; a change is a new Snapshot
+    with a higher version, swapped in at once. The entries' statistics are still updated in place.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final WordBankEntry[] entries;
+        private final int[] grammarCodes; // GrammarCode of entries[i]
+        private final List<WordBankEntry> view;
+
+        Snapshot(long version, WordBankEntry[] entries, int[] grammarCodes) {
+            this.version = version;
+            this.entries = entries;
+            this.grammarCodes = grammarCodes;
+            this.view = Collections.unmodifiableList(Arrays.asList(entries));
+        }
+
+        public long getVersion() {
+            return this.version;
+        }
+
+        // read only
+        public List<WordBankEntry> getEntries() {
+            return this.view;
+        }
+
+        public int size() {
+            return this.entries.length;
+        }
     }
 
     public enum EntryHeading {
@@ -292,7 +930,12 @@ public class WordBank {
         ANSWER(3, "Answer", "Answer"),
         LAST_SEEN(4, "LastSeen", "Last Seen"),
         COUNT_SEEN(5, "CountSeen", "Count Seen"),
-        COUNT_INCORRECT(6, "CountIncorrect", "Count Incorrect");
+        COUNT_INCORRECT(6, "CountIncorrect", "Count Incorrect"),
+        DIFFICULTY(7, "Difficulty", "Difficulty"),
+        LEITNER_BOX(8, "LeitnerBox", "Leitner Box");
+
+        // ForeignLanguage through CountIncorrect, the columns after them are optional
+        public static final int REQUIRED_COLUMNS = 7;
 
         private final int index;
         private final String camelCase;
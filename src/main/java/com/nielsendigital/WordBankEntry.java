@@ -1,37 +1,115 @@
 package com.nielsendigital;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
+import java.util.Locale;
 
+/*
+WordBankEntry is one row of a word bank, kept compact since a bank holds every row in memory: the foreign and
+native terms (and the answer, when it can't be rebuilt from them) share one byte array, Latin-1 when every
+character fits (e.g., German) and UTF-8 otherwise, the grammar text is the word bank's shared copy, the last seen
+time is epoch millis and the difficulty a float. The getters build the Strings and Timestamp on demand, so they
+return equal values rather than the same instances. See MemoryReport for the per-entry footprint.
+ */
 public class WordBankEntry implements LanguageTuple {
-    private final String foreignLanguage;
-    private final String nativeLanguage;
+    // answers are normally the native term, a blank line and the grammar (see UI getAnswer())
+    private static final String[] ANSWER_SEPARATORS = {"\n\n", "\u2028\u2028"};
+    private static final byte ANSWER_STORED = 0;
+    private static final byte LATIN_1 = 0;
+    private static final byte UTF_8 = 1;
+
+    private final byte[] text;        // foreign term, native term and the stored answer, if any
+    private final int nativeStart;    // offsets into text
+    private final int answerStart;
+    private final byte textCoding;    // LATIN_1 or UTF_8
+    private final byte answerForm;
+    private byte leitnerBox;          // see LeitnerBoxes
     private final String grammar;
-    private final String answer;
-    private Timestamp lastSeen;
+    private final int grammarCode;    // see GrammarCode
+    private long lastSeenMillis;
     private int countSeen;
     private int countIncorrect;
+    private float difficulty;         // Elo rating, NaN until the entry has been rated (see SkillRatings)
+    private final long entryId;       // see getEntryId()
 
     public WordBankEntry(String foreignLanguage,
                          String nativeLanguage,
                          String grammar,
                          String answer,
-                         Timestamp lastSeen,
+                         long lastSeenMillis,
                          int countSeen,
-                         int countIncorrect) {
-        this.foreignLanguage = foreignLanguage;
-        this.nativeLanguage = nativeLanguage;
+                         int countIncorrect,
+                         double difficulty,
+                         int leitnerBox) {
         this.grammar = grammar;
-        this.answer = answer;
-        this.lastSeen = lastSeen;
+        this.grammarCode = GrammarCode.parse(grammar);
+        this.answerForm = answerFormOf(nativeLanguage, grammar, answer);
+        String storedAnswer = (this.answerForm == ANSWER_STORED && answer != null) ? answer : "";
+        this.textCoding = (isLatin1(foreignLanguage) && isLatin1(nativeLanguage) && isLatin1(storedAnswer))
+                ? LATIN_1 : UTF_8;
+        byte[] foreignBytes = foreignLanguage.getBytes(charset(this.textCoding));
+        byte[] nativeBytes = nativeLanguage.getBytes(charset(this.textCoding));
+        byte[] answerBytes = storedAnswer.getBytes(charset(this.textCoding));
+        this.nativeStart = foreignBytes.length;
+        this.answerStart = this.nativeStart + nativeBytes.length;
+        this.text = new byte[this.answerStart + answerBytes.length];
+        System.arraycopy(foreignBytes, 0, this.text, 0, foreignBytes.length);
+        System.arraycopy(nativeBytes, 0, this.text, this.nativeStart, nativeBytes.length);
+        System.arraycopy(answerBytes, 0, this.text, this.answerStart, answerBytes.length);
+        this.lastSeenMillis = lastSeenMillis;
         this.countSeen = countSeen;
         this.countIncorrect = countIncorrect;
+        this.difficulty = (float) difficulty;
+        this.leitnerBox = clampLeitnerBox(leitnerBox);
+        this.entryId = entryIdOf(foreignLanguage, nativeLanguage);
+    }
+
+    public WordBankEntry(String foreignLanguage,
+                         String nativeLanguage,
+                         String grammar,
+                         String answer,
+                         Timestamp lastSeen,
+                         int countSeen,
+                         int countIncorrect,
+                         double difficulty,
+                         int leitnerBox) {
+        this(foreignLanguage, nativeLanguage, grammar, answer, lastSeen.getTime(), countSeen, countIncorrect,
+                difficulty, leitnerBox);
+    }
+
+    public WordBankEntry(String foreignLanguage,
+                         String nativeLanguage,
+                         String grammar,
+                         String answer,
+                         Timestamp lastSeen,
+                         int countSeen,
+                         int countIncorrect) {
+        this(foreignLanguage, nativeLanguage, grammar, answer, lastSeen, countSeen, countIncorrect, Double.NaN, 0);
+    }
+
+    private static boolean isLatin1(String value) {
+        for(int i = 0; i < value.length(); i++) {
+            if(value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Charset charset(byte textCoding) {
+        return (textCoding == LATIN_1) ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+    }
+
+    private String text(int start, int end) {
+        return new String(this.text, start, end - start, charset(this.textCoding));
     }
 
     @Override
     public boolean updateLastSeen() {
-        Timestamp ts = new Timestamp(System.currentTimeMillis());
-        if (ts.getTime() > this.lastSeen.getTime()) {
-            this.lastSeen = ts;
+        long now = System.currentTimeMillis();
+        if (now > this.lastSeenMillis) {
+            this.lastSeenMillis = now;
             return true;
         }
         return false;
@@ -52,23 +130,68 @@ public class WordBankEntry implements LanguageTuple {
     }
 
     public String getForeignLanguage() {
-        return foreignLanguage;
+        return text(0, this.nativeStart);
     }
 
     public String getNativeLanguage() {
-        return nativeLanguage;
+        return text(this.nativeStart, this.answerStart);
     }
 
     public String getGrammar() {
         return grammar;
     }
 
+    public int getGrammarCode() {
+        return grammarCode;
+    }
+
     public String getAnswer() {
-        return answer;
+        if(this.answerForm == ANSWER_STORED) {
+            return text(this.answerStart, this.text.length);
+        }
+        int form = this.answerForm - 1;
+        String separator = ANSWER_SEPARATORS[form / 2];
+        return getNativeLanguage() + separator + ((form % 2 == 1) ? this.grammar.toLowerCase(Locale.ROOT) : this.grammar);
+    }
+
+    /*
+    Works out whether answer is nativeLanguage + separator + grammar (as entered, or lower cased as in older word
+    bank files). If so, only the form is kept and getAnswer() rebuilds the text, which saves storing it.
+     */
+    private static byte answerFormOf(String nativeLanguage, String grammar, String answer) {
+        if(nativeLanguage == null || grammar == null || answer == null) {
+            return ANSWER_STORED;
+        }
+        for(int i = 0; i < ANSWER_SEPARATORS.length; i++) {
+            String separator = ANSWER_SEPARATORS[i];
+            if(answer.length() != nativeLanguage.length() + separator.length() + grammar.length()
+                    || !answer.startsWith(nativeLanguage)
+                    || !answer.startsWith(separator, nativeLanguage.length())) {
+                continue;
+            }
+            int grammarStart = nativeLanguage.length() + separator.length();
+            if(answer.startsWith(grammar, grammarStart)) {
+                return (byte) (1 + i * 2);
+            }
+            if(answer.startsWith(grammar.toLowerCase(Locale.ROOT), grammarStart)) {
+                return (byte) (2 + i * 2);
+            }
+        }
+        return ANSWER_STORED;
+    }
+
+    // false when getAnswer() rebuilds the answer from the native term and grammar
+    boolean isAnswerStored() {
+        return this.answerForm == ANSWER_STORED;
     }
 
+    // a new Timestamp on every call, see getLastSeenMillis()
     public Timestamp getLastSeen() {
-        return lastSeen;
+        return new Timestamp(this.lastSeenMillis);
+    }
+
+    public long getLastSeenMillis() {
+        return lastSeenMillis;
     }
 
     public int getCountSeen() {
@@ -79,6 +202,53 @@ public class WordBankEntry implements LanguageTuple {
         return countIncorrect;
     }
 
+    // the Elo difficulty, estimated from the answer counts until the entry has been rated
+    public double getDifficulty() {
+        if(Double.isNaN(this.difficulty)) {
+            return SkillRatings.estimateDifficulty(this.countSeen, this.countIncorrect);
+        }
+        return difficulty;
+    }
+
+    public boolean isRated() {
+        return !Double.isNaN(this.difficulty);
+    }
+
+    public void setDifficulty(double difficulty) {
+        this.difficulty = (float) difficulty;
+    }
+
+    public int getLeitnerBox() {
+        return leitnerBox;
+    }
+
+    public void setLeitnerBox(int leitnerBox) {
+        this.leitnerBox = clampLeitnerBox(leitnerBox);
+    }
+
+    private static byte clampLeitnerBox(int leitnerBox) {
+        return (byte) Math.max(0, Math.min(LeitnerBoxes.BOXES - 1, leitnerBox));
+    }
+
+    /*
+    Stable id used to refer to an entry outside the word bank file (e.g., in the quiz event log and the latency
+    statistics). It is a 64-bit FNV-1a hash of the lower cased foreign and native terms, so it survives re-ordering
+    and reloading of the bank. It is worked out once, when the entry is made, as it is asked for on every answer.
+     */
+    public long getEntryId() {
+        return this.entryId;
+    }
+
+    private static long entryIdOf(String foreignLanguage, String nativeLanguage) {
+        long hash = 0xcbf29ce484222325L;
+        String key = foreignLanguage.toLowerCase(Locale.ROOT) + '\0' + nativeLanguage.toLowerCase(Locale.ROOT);
+        for(int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return (hash == 0) ? 1 : hash;
+    }
+
     public String toCsvRow() {
         return "\"" + this.getForeignLanguage().replace("\"", "") + "\"," +
                 "\"" + this.getNativeLanguage().replace("\"", "") + "\"," +
@@ -86,7 +256,9 @@ public class WordBankEntry implements LanguageTuple {
                 "\"" + this.getAnswer().replace("\"", "").replace("\n", "\u2028") + "\"," +
                 "\"" + this.getLastSeen() + "\"," +
                 "\"" + this.getCountSeen() + "\"," +
-                "\"" + this.getCountIncorrect() + "\"" +
+                "\"" + this.getCountIncorrect() + "\"," +
+                "\"" + (this.isRated() ? Long.toString(Math.round(this.difficulty)) : "") + "\"," +
+                "\"" + this.getLeitnerBox() + "\"" +
                 "\n";
     }
 
@@ -98,7 +270,9 @@ public class WordBankEntry implements LanguageTuple {
                 this.getAnswer(),
                 this.getLastSeen().toLocalDateTime().toString(),
                 Integer.toString(this.getCountSeen()),
-                Integer.toString(this.getCountIncorrect())
+                Integer.toString(this.getCountIncorrect()),
+                Long.toString(Math.round(this.getDifficulty())),
+                Integer.toString(this.getLeitnerBox())
         };
     }
 
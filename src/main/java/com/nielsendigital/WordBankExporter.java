@@ -0,0 +1,492 @@
+package com.nielsendigital;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/*
+WordBankExporter streams WordBankEntry statistics straight to a channel. Rows are encoded character by character
+into a single reusable buffer, so memory use stays constant no matter how large the word bank is and no
+intermediate String is built for a row.
+
+Answer history from the QuizEventLog is exported the same way with writeHistoryHeader() and writeEvent().
+
+Supported formats:
+    CSV         : the same column layout as the word bank file
+    JSON_LINES  : one json object per line
+    BINARY      : "LLWB" + version byte, then per entry 4 varint length-prefixed UTF-8 strings,
+                  lastSeen as 8 byte epoch millis, countSeen, countIncorrect as varints, the difficulty as an
+                  8 byte double (NaN if not rated yet) and the Leitner box as a byte
+ */
+public class WordBankExporter {
+    public static final byte[] BINARY_MAGIC = {'L', 'L', 'W', 'B'};
+    public static final byte[] BINARY_HISTORY_MAGIC = {'L', 'L', 'W', 'H'};
+    public static final byte BINARY_VERSION = 3;
+    private static final String[] HISTORY_HEADINGS =
+            {"AnsweredAt", "EntryId", "Direction", "AnswerGiven", "IsCorrect", "ResponseNanos"};
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final char LINE_SEPARATOR = '\u2028';
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final WritableByteChannel channel;
+    private final ExportFormat format;
+    private final ByteBuffer buffer;
+    private long entriesWritten;
+
+    public WordBankExporter(WritableByteChannel channel, ExportFormat format, int bufferSize) {
+        this.channel = channel;
+        this.format = format;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 64));
+        this.entriesWritten = 0;
+    }
+
+    public WordBankExporter(WritableByteChannel channel, ExportFormat format) {
+        this(channel, format, DEFAULT_BUFFER_SIZE);
+    }
+
+    public void writeHeader() throws IOException {
+        switch(this.format) {
+            case CSV -> {
+                int count = 0;
+                for(WordBank.EntryHeading heading : WordBank.EntryHeading.values()) {
+                    count++;
+                    writeChars(heading.getCamelCase());
+                    if(count < WordBank.EntryHeading.values().length) {
+                        writeByte(',');
+                    }
+                }
+                writeByte('\n');
+            }
+            case BINARY -> {
+                for(byte b : BINARY_MAGIC) {
+                    writeByte(b);
+                }
+                writeByte(BINARY_VERSION);
+            }
+            case JSON_LINES -> {
+                // json lines has no header row
+            }
+        }
+    }
+
+    public void writeHistoryHeader() throws IOException {
+        switch(this.format) {
+            case CSV -> {
+                for(int i = 0; i < HISTORY_HEADINGS.length; i++) {
+                    writeChars(HISTORY_HEADINGS[i]);
+                    writeByte((i < HISTORY_HEADINGS.length - 1) ? ',' : '\n');
+                }
+            }
+            case BINARY -> {
+                for(byte b : BINARY_HISTORY_MAGIC) {
+                    writeByte(b);
+                }
+                writeByte(BINARY_VERSION);
+            }
+            case JSON_LINES -> {
+                // json lines has no header row
+            }
+        }
+    }
+
+    public void writeEvent(QuizEventLog.QuizEvent event) throws IOException {
+        switch(this.format) {
+            case CSV -> {
+                writeLong(event.getAnsweredAt());
+                writeByte(',');
+                writeLong(event.getEntryId());
+                writeByte(',');
+                writeChars(event.getDirection().name());
+                writeByte(',');
+                writeCsvField(event.getAnswerGiven());
+                writeByte(',');
+                writeChars(event.isCorrect() ? "true" : "false");
+                writeByte(',');
+                writeLong(event.getResponseNanos());
+                writeByte('\n');
+            }
+            case JSON_LINES -> {
+                writeByte('{');
+                writeJsonName(HISTORY_HEADINGS[0]);
+                writeLong(event.getAnsweredAt());
+                writeByte(',');
+                writeJsonName(HISTORY_HEADINGS[1]);
+                writeLong(event.getEntryId());
+                writeByte(',');
+                writeJsonName(HISTORY_HEADINGS[2]);
+                writeJsonString(event.getDirection().name());
+                writeByte(',');
+                writeJsonName(HISTORY_HEADINGS[3]);
+                writeJsonString(event.getAnswerGiven());
+                writeByte(',');
+                writeJsonName(HISTORY_HEADINGS[4]);
+                writeChars(event.isCorrect() ? "true" : "false");
+                writeByte(',');
+                writeJsonName(HISTORY_HEADINGS[5]);
+                writeLong(event.getResponseNanos());
+                writeByte('}');
+                writeByte('\n');
+            }
+            case BINARY -> {
+                writeRawLong(event.getAnsweredAt());
+                writeRawLong(event.getEntryId());
+                writeByte(event.getDirection().ordinal());
+                writeByte(event.isCorrect() ? 1 : 0);
+                writeRawLong(event.getResponseNanos());
+                writeBinaryString(event.getAnswerGiven());
+            }
+        }
+        this.entriesWritten++;
+    }
+
+    public void writeEntry(WordBankEntry wbe) throws IOException {
+        switch(this.format) {
+            case CSV -> writeCsvEntry(wbe);
+            case JSON_LINES -> writeJsonEntry(wbe);
+            case BINARY -> writeBinaryEntry(wbe);
+        }
+        this.entriesWritten++;
+    }
+
+    public void writeEntries(Iterable<WordBankEntry> entries) throws IOException {
+        for(WordBankEntry wbe : entries) {
+            writeEntry(wbe);
+        }
+    }
+
+    public void flush() throws IOException {
+        this.buffer.flip();
+        while(this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    public long getEntriesWritten() {
+        return entriesWritten;
+    }
+
+    public ExportFormat getFormat() {
+        return format;
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ CSV ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    private void writeCsvEntry(WordBankEntry wbe) throws IOException {
+        writeCsvField(wbe.getForeignLanguage());
+        writeByte(',');
+        writeCsvField(wbe.getNativeLanguage());
+        writeByte(',');
+        writeCsvField(wbe.getGrammar());
+        writeByte(',');
+        writeCsvField(wbe.getAnswer());
+        writeByte(',');
+        writeByte('"');
+        writeTimestamp(wbe.getLastSeen());
+        writeByte('"');
+        writeByte(',');
+        writeByte('"');
+        writeLong(wbe.getCountSeen());
+        writeByte('"');
+        writeByte(',');
+        writeByte('"');
+        writeLong(wbe.getCountIncorrect());
+        writeByte('"');
+        writeByte(',');
+        writeByte('"');
+        if(wbe.isRated()) {
+            writeLong(Math.round(wbe.getDifficulty()));
+        }
+        writeByte('"');
+        writeByte(',');
+        writeByte('"');
+        writeLong(wbe.getLeitnerBox());
+        writeByte('"');
+        writeByte('\n');
+    }
+
+    // same rules as WordBankEntry.toCsvRow(): quotes are dropped and new lines are kept as line separators
+    private void writeCsvField(String value) throws IOException {
+        writeByte('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c == '"') {
+                continue;
+            }
+            if(c == '\n') {
+                c = LINE_SEPARATOR;
+            }
+            writeChar(value, i, c);
+            if(Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                i++;
+            }
+        }
+        writeByte('"');
+    }
+
+    // matches Timestamp.toString(): yyyy-mm-dd hh:mm:ss.fffffffff with trailing zeros of the fraction trimmed
+    private void writeTimestamp(Timestamp ts) throws IOException {
+        LocalDateTime ldt = ts.toLocalDateTime();
+        writePadded(ldt.getYear(), 4);
+        writeByte('-');
+        writePadded(ldt.getMonthValue(), 2);
+        writeByte('-');
+        writePadded(ldt.getDayOfMonth(), 2);
+        writeByte(' ');
+        writePadded(ldt.getHour(), 2);
+        writeByte(':');
+        writePadded(ldt.getMinute(), 2);
+        writeByte(':');
+        writePadded(ldt.getSecond(), 2);
+        writeByte('.');
+
+        int nanos = ts.getNanos();
+        if(nanos == 0) {
+            writeByte('0');
+            return;
+        }
+        int digits = 9;
+        while(nanos % 10 == 0) {
+            nanos /= 10;
+            digits--;
+        }
+        writePadded(nanos, digits);
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ JSON Lines ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    private void writeJsonEntry(WordBankEntry wbe) throws IOException {
+        writeByte('{');
+        writeJsonName(WordBank.EntryHeading.FOREIGN_LANGUAGE);
+        writeJsonString(wbe.getForeignLanguage());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.NATIVE_LANGUAGE);
+        writeJsonString(wbe.getNativeLanguage());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.GRAMMAR);
+        writeJsonString(wbe.getGrammar());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.ANSWER);
+        writeJsonString(wbe.getAnswer());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.LAST_SEEN);
+        writeLong(wbe.getLastSeenMillis());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.COUNT_SEEN);
+        writeLong(wbe.getCountSeen());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.COUNT_INCORRECT);
+        writeLong(wbe.getCountIncorrect());
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.DIFFICULTY);
+        if(wbe.isRated()) {
+            writeLong(Math.round(wbe.getDifficulty()));
+        } else {
+            // like the blank csv cell, so an estimate from the answer counts isn't read as a rating
+            writeChars("null");
+        }
+        writeByte(',');
+        writeJsonName(WordBank.EntryHeading.LEITNER_BOX);
+        writeLong(wbe.getLeitnerBox());
+        writeByte('}');
+        writeByte('\n');
+    }
+
+    private void writeJsonName(WordBank.EntryHeading heading) throws IOException {
+        writeJsonName(heading.getCamelCase());
+    }
+
+    private void writeJsonName(String name) throws IOException {
+        writeByte('"');
+        writeChars(name);
+        writeByte('"');
+        writeByte(':');
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        writeByte('"');
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '"' -> { writeByte('\\'); writeByte('"'); }
+                case '\\' -> { writeByte('\\'); writeByte('\\'); }
+                case '\n' -> { writeByte('\\'); writeByte('n'); }
+                case '\r' -> { writeByte('\\'); writeByte('r'); }
+                case '\t' -> { writeByte('\\'); writeByte('t'); }
+                default -> {
+                    if(c < 0x20) {
+                        writeByte('\\');
+                        writeByte('u');
+                        writeByte('0');
+                        writeByte('0');
+                        writeByte(HEX[c >> 4]);
+                        writeByte(HEX[c & 0xF]);
+                    } else {
+                        writeChar(value, i, c);
+                        if(Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                            i++;
+                        }
+                    }
+                }
+            }
+        }
+        writeByte('"');
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ Binary ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    private void writeBinaryEntry(WordBankEntry wbe) throws IOException {
+        writeBinaryString(wbe.getForeignLanguage());
+        writeBinaryString(wbe.getNativeLanguage());
+        writeBinaryString(wbe.getGrammar());
+        writeBinaryString(wbe.getAnswer());
+        writeRawLong(wbe.getLastSeenMillis());
+        writeVarInt(wbe.getCountSeen());
+        writeVarInt(wbe.getCountIncorrect());
+        writeRawLong(Double.doubleToLongBits(wbe.isRated() ? wbe.getDifficulty() : Double.NaN));
+        writeByte(wbe.getLeitnerBox());
+    }
+
+    private void writeBinaryString(String value) throws IOException {
+        writeVarInt(utf8Length(value));
+        writeChars(value);
+    }
+
+    public static int utf8Length(String value) {
+        int length = 0;
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                length++;
+            } else if(c < 0x800) {
+                length += 2;
+            } else if(Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈ Primitives ≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈≈
+
+    private void writeChars(String value) throws IOException {
+        for(int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            writeChar(value, i, c);
+            if(Character.isHighSurrogate(c) && i + 1 < value.length()) {
+                i++;
+            }
+        }
+    }
+
+    // UTF-8 encodes c (the char at index i of value) into the buffer
+    private void writeChar(String value, int i, char c) throws IOException {
+        ensureRemaining(4);
+        if(c < 0x80) {
+            this.buffer.put((byte) c);
+        } else if(c < 0x800) {
+            this.buffer.put((byte) (0xC0 | (c >> 6)));
+            this.buffer.put((byte) (0x80 | (c & 0x3F)));
+        } else if(Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, value.charAt(i + 1));
+            this.buffer.put((byte) (0xF0 | (cp >> 18)));
+            this.buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+            this.buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+            this.buffer.put((byte) (0x80 | (cp & 0x3F)));
+        } else {
+            this.buffer.put((byte) (0xE0 | (c >> 12)));
+            this.buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+            this.buffer.put((byte) (0x80 | (c & 0x3F)));
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        ensureRemaining(20);
+        if(value < 0) {
+            this.buffer.put((byte) '-');
+            if(value == Long.MIN_VALUE) {
+                writeChars("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while(value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while(divisor > 0) {
+            this.buffer.put((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    private void writePadded(int value, int width) throws IOException {
+        ensureRemaining(Math.max(width, 10));
+        int divisor = 1;
+        for(int i = 1; i < width; i++) {
+            divisor *= 10;
+        }
+        // values wider than the padding are written in full
+        while(value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while(divisor > 0) {
+            this.buffer.put((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        ensureRemaining(5);
+        while((value & ~0x7F) != 0) {
+            this.buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.buffer.put((byte) value);
+    }
+
+    private void writeRawLong(long value) throws IOException {
+        ensureRemaining(8);
+        this.buffer.putLong(value);
+    }
+
+    private void writeByte(int b) throws IOException {
+        ensureRemaining(1);
+        this.buffer.put((byte) b);
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+        if(this.buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    public enum ExportFormat {
+        CSV("csv", "CSV"),
+        JSON_LINES("jsonl", "JSON Lines"),
+        BINARY("llwb", "Binary");
+
+        private final String extension;
+        private final String text;
+
+        ExportFormat(String extension, String text) {
+            this.extension = extension;
+            this.text = text;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public String getText() {
+            return text;
+        }
+    }
+}
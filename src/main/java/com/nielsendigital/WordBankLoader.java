@@ -0,0 +1,128 @@
+package com.nielsendigital;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/*
+WordBankLoader finds the data directory and loads word banks from it. Startup only pays for what the main menu
+needs: the data directory is resolved once on first use and the default word bank can be parsed on a background
+thread (preloadInBackground) while the menu renders, so a quick quiz usually finds it ready.
+
+The data directory can be set with -Dlanguagelearner.dataDir=<path>, otherwise it is looked up relative to
+where the classes were loaded from.
+ */
+public class WordBankLoader {
+    public static final String DEFAULT_WORD_BANK = "german-english.csv";
+    public static final String DATA_DIR_PROPERTY = "languagelearner.dataDir";
+
+    private static volatile File dataDirectory;
+    private static volatile Preload preloaded;
+
+    public static File getDataDirectory() throws Exception {
+        File dir = dataDirectory;
+        if(dir == null) {
+            synchronized (WordBankLoader.class) {
+                if(dataDirectory == null) {
+                    dataDirectory = resolveDataDirectory();
+                }
+                dir = dataDirectory;
+            }
+        }
+        return dir;
+    }
+
+    private static File resolveDataDirectory() throws Exception {
+        String configured = System.getProperty(DATA_DIR_PROPERTY);
+        if(configured != null && !configured.isBlank()) {
+            return new File(configured).getCanonicalFile();
+        }
+
+        Path root = Paths.get(new File(Main.class.getProtectionDomain().getCodeSource().getLocation()
+                .toURI()).getPath());
+        Path[] candidates = {
+                Paths.get(root.toString(), "..", "src", "main", "resources", "data"),
+                Paths.get(root.toString(), "..", "resources", "data"),        // jar in target/
+                Paths.get(root.toString(), "..", "..", "src", "main", "resources", "data"), // target/classes
+                Paths.get(root.toString(), "data")                             // resources copied with the classes
+        };
+        for(Path candidate : candidates) {
+            File dir = candidate.normalize().toFile();
+            if(dir.isDirectory()) {
+                return dir;
+            }
+        }
+        // keep the original location so the error message points somewhere sensible
+        return candidates[0].normalize().toFile();
+    }
+
+    public static File getWordBankFile(String fileName) throws Exception {
+        File file = new File(fileName);
+        if(file.isAbsolute() || file.isFile()) {
+            return file;
+        }
+        return new File(getDataDirectory(), fileName);
+    }
+
+    public static void preloadInBackground(String fileName) {
+        String path;
+        try {
+            path = getWordBankFile(fileName).getCanonicalPath();
+        } catch (Exception e) {
+            return; // nothing to preload, loading the file reports the problem
+        }
+        CompletableFuture<WordBank> future = new CompletableFuture<>();
+        preloaded = new Preload(path, future);
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(new WordBank(path));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        }, "word-bank-preload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /*
+    Returns the preloaded word bank if it is for this file (waiting for it to finish), otherwise reads the file now
+    without waiting for the preload. A preloaded bank is handed out once, later calls read the file again so they
+    see what was saved since.
+     */
+    public static WordBank load(File wordBankFile) throws Exception {
+        String path = wordBankFile.getCanonicalPath();
+        Preload preload = preloaded;
+        if(preload != null && path.equals(preload.path)) {
+            try {
+                WordBank wordBank = preload.future.join();
+                synchronized (WordBankLoader.class) {
+                    if(preloaded == preload) {
+                        preloaded = null;
+                        return wordBank;
+                    }
+                }
+            } catch (CompletionException e) {
+                // fall through and report the problem from a fresh load
+                preloaded = null;
+            }
+        }
+        return new WordBank(path);
+    }
+
+    public static WordBank load(String fileName) throws Exception {
+        return load(getWordBankFile(fileName));
+    }
+
+    // the word bank being preloaded and its canonical path, known before it has been parsed
+    private static final class Preload {
+        final String path;
+        final CompletableFuture<WordBank> future;
+
+        Preload(String path, CompletableFuture<WordBank> future) {
+            this.path = path;
+            this.future = future;
+        }
+    }
+}
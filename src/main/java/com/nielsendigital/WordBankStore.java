@@ -0,0 +1,172 @@
+package com.nielsendigital;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/*
+WordBankStore is where a WordBank keeps its entries. Every store can load, stream and rewrite the whole bank and
+append new entries. A store that supportsPointUpdates() also writes single entries (quiz results) and answers the
+range scans quizzes select from touching only the parts of the file involved; for the others these default to
+reading (and rewriting) the whole bank.
+
+    Backend.CSV    : CsvWordBankStore, the original csv file
+    Backend.BINARY : BinaryWordBankStore, a snapshot in the binary export format (.llwb)
+    Backend.BTREE  : BTreeWordBankStore, a single-file, page-based B+tree (.llbt) with point updates
+    Backend.MEMORY : MemoryWordBankStore, kept in memory for the life of the process and never written
+
+forFile() picks the backend from the file extension unless -Dlanguagelearner.store=<backend> is set. A configured
+file backend keeps the bank next to the given file under its own extension (e.g., german-english.csv is kept in
+german-english.llbt), copying the given file the first time. MEMORY starts from the given file.
+ */
+public interface WordBankStore extends Closeable {
+    String STORE_PROPERTY = "languagelearner.store";
+
+    static WordBankStore forFile(File file, boolean shouldPrintDetails) throws IOException {
+        Backend fileBackend = Backend.forFile(file);
+        Backend configured = Backend.configured();
+        if(configured == null || configured == fileBackend) {
+            return fileBackend.open(file, shouldPrintDetails);
+        }
+        if(configured == Backend.MEMORY) {
+            return MemoryWordBankStore.forFile(file, fileBackend.open(file, shouldPrintDetails));
+        }
+
+        File storeFile = configured.fileFor(file);
+        WordBankStore store = configured.open(storeFile, shouldPrintDetails);
+        if(!storeFile.isFile()) {
+            try (WordBankStore source = fileBackend.open(file, shouldPrintDetails)) {
+                store.writeAll(source.readAll(new StringPool()));
+            }
+        }
+        return store;
+    }
+
+    // every entry; the grammar text is canonicalized through the pool
+    List<WordBankEntry> readAll(StringPool stringPool) throws IOException;
+
+    // every entry, read as the stream is consumed where the store can; close the stream when done
+    default Stream<WordBankEntry> stream(StringPool stringPool) throws IOException {
+        return readAll(stringPool).stream();
+    }
+
+    // replaces the stored bank with these entries
+    void writeAll(Collection<WordBankEntry> entries) throws IOException;
+
+    // adds new entries after the stored ones
+    void append(Collection<WordBankEntry> entries) throws IOException;
+
+    default boolean supportsPointUpdates() {
+        return false;
+    }
+
+    // inserts the entry or, if an entry with the same foreign term is stored, replaces it
+    default void upsert(WordBankEntry entry) throws IOException {
+        List<WordBankEntry> entries = new ArrayList<>(readAll(new StringPool()));
+        String key = TranslationGraph.normalize(entry.getForeignLanguage());
+        int index = 0;
+        while(index < entries.size()
+                && !TranslationGraph.normalize(entries.get(index).getForeignLanguage()).equals(key)) {
+            index++;
+        }
+        if(index < entries.size()) {
+            entries.set(index, entry);
+        } else {
+            entries.add(entry);
+        }
+        writeAll(entries);
+    }
+
+    // the limit least recently seen entries, oldest first
+    default List<WordBankEntry> scanByLastSeen(int limit) throws IOException {
+        List<WordBankEntry> entries = new ArrayList<>(readAll(new StringPool()));
+        WordBank.sortByStatistic(entries, WordBankEntry::getLastSeenMillis);
+        return new ArrayList<>(entries.subList(0, Math.max(0, Math.min(limit, entries.size()))));
+    }
+
+    // every entry answered incorrectly at least minCountIncorrect times, fewest first
+    default List<WordBankEntry> scanByCountIncorrect(int minCountIncorrect) throws IOException {
+        List<WordBankEntry> entries = new ArrayList<>();
+        for(WordBankEntry entry : readAll(new StringPool())) {
+            if(entry.getCountIncorrect() >= minCountIncorrect) {
+                entries.add(entry);
+            }
+        }
+        WordBank.sortByStatistic(entries, WordBankEntry::getCountIncorrect);
+        return entries;
+    }
+
+    // makes the writes so far durable
+    default void flush() throws IOException {
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    enum Backend {
+        CSV("csv"),
+        BINARY(WordBankExporter.ExportFormat.BINARY.getExtension()),
+        BTREE(BTreeWordBankStore.EXTENSION),
+        MEMORY(null);
+
+        private final String extension;
+
+        Backend(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public WordBankStore open(File file, boolean shouldPrintDetails) {
+            return switch(this) {
+                case CSV -> new CsvWordBankStore(file, shouldPrintDetails);
+                case BINARY -> new BinaryWordBankStore(file);
+                case BTREE -> new BTreeWordBankStore(file);
+                case MEMORY -> new MemoryWordBankStore();
+            };
+        }
+
+        // the file this backend keeps the word bank in, next to the given one
+        public File fileFor(File file) {
+            String name = file.getName();
+            int extensionIndex = name.lastIndexOf('.');
+            if(extensionIndex > 0) {
+                name = name.substring(0, extensionIndex);
+            }
+            return new File(file.getAbsoluteFile().getParentFile(), name + "." + this.extension);
+        }
+
+        // the file backend for the file's extension, csv for anything unknown
+        public static Backend forFile(File file) {
+            String name = file.getName().toLowerCase(Locale.ROOT);
+            for(Backend backend : values()) {
+                if(backend.extension != null && name.endsWith("." + backend.extension)) {
+                    return backend;
+                }
+            }
+            return CSV;
+        }
+
+        // the backend set with -Dlanguagelearner.store, null if there is none
+        public static Backend configured() {
+            String configured = System.getProperty(STORE_PROPERTY);
+            if(configured == null || configured.isBlank()) {
+                return null;
+            }
+            try {
+                return Backend.valueOf(configured.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.out.println("ERROR: unknown word bank store " + configured + ", using the file extension");
+            }
+            return null;
+        }
+    }
+}